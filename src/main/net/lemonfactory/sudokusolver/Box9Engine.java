@@ -0,0 +1,295 @@
+package net.lemonfactory.sudokusolver;
+
+import net.lemonfactory.sudokusolver.type.BoxTypeStructure;
+import net.lemonfactory.sudokusolver.type.SudokuTypeStructure;
+
+/**
+ * <p>
+ * Search engine dedicated to the regular 9×9 structure with 3×3 boxes, used
+ * by {@link SudokuSolver} in place of the generic search for such a
+ * structure. Candidates are kept as one 81-bit board per symbol, in two
+ * {@code long}s each: bit {@code i} of the low word is cell {@code i}, and
+ * bit {@code i - 64} of the high word is cell {@code i} for cells 64 to 80.
+ * A solved cell is kept on the board of its symbol only. Assigning a symbol
+ * clears the cell from the other boards and the peers of the cell from the
+ * board of the symbol, and units are checked for hidden singles with bit
+ * counts, so no structure is consulted during the search.
+ * </p>
+ * <p>
+ * The search is an explicit stack of board frames, so it can be resumed for
+ * another solution. All buffers are allocated once. Thread-safety is not
+ * guaranteed, except for {@link #abort()}.
+ * </p>
+ *
+ * @author Choongmin Lee
+ * @see SudokuSolver
+ */
+final class Box9Engine {
+
+    static final SudokuTypeStructure STRUCTURE =
+            BoxTypeStructure.getInstance(3, 3);
+
+    private static final int CELLS = 81;
+    private static final long ALL_HI = (1L << (CELLS - 64)) - 1;
+
+    /* Frame layout: boards of symbols 0-8 (low, high), then solved cells. */
+    private static final int SOLVED = 18;
+    private static final int FRAME = 20;
+
+    private static final long[] PEERS_LO = new long[CELLS];
+    private static final long[] PEERS_HI = new long[CELLS];
+    private static final long[] UNITS_LO = new long[27];
+    private static final long[] UNITS_HI = new long[27];
+
+    static {
+        for (int i = 0; i < CELLS; ++i) {
+            int r = i / 9;
+            int c = i % 9;
+            int b = r / 3 * 3 + c / 3;
+            setBit(UNITS_LO, UNITS_HI, r, i);
+            setBit(UNITS_LO, UNITS_HI, 9 + c, i);
+            setBit(UNITS_LO, UNITS_HI, 18 + b, i);
+        }
+        for (int i = 0; i < CELLS; ++i) {
+            int r = i / 9;
+            int c = i % 9;
+            int b = r / 3 * 3 + c / 3;
+            PEERS_LO[i] = UNITS_LO[r] | UNITS_LO[9 + c] | UNITS_LO[18 + b];
+            PEERS_HI[i] = UNITS_HI[r] | UNITS_HI[9 + c] | UNITS_HI[18 + b];
+            if (i < 64)
+                PEERS_LO[i] &= ~(1L << i);
+            else
+                PEERS_HI[i] &= ~(1L << (i - 64));
+        }
+    }
+
+    private final long[] frames = new long[(CELLS + 1) * FRAME];
+    private final int[] branchCells = new int[CELLS + 1];
+    private final int[] remaining = new int[CELLS + 1];
+    private final int[] grid = new int[CELLS];
+    private int depth;
+    private int guesses;
+    private boolean active;  // a search can be resumed
+
+    private volatile boolean aborted;
+
+    static boolean supports(SudokuTypeStructure structure) {
+        return STRUCTURE.equals(structure);
+    }
+
+    /**
+     * Solves the specified puzzle, which must be valid. Returns {@code true}
+     * if a solution is found, which is then in {@link #getGrid()}.
+     */
+    boolean solve(int[] puzzle) {
+        aborted = false;
+        guesses = 0;
+        depth = 0;
+        active = true;
+        for (int k = 0; k < FRAME; ++k)
+            frames[k] = 0;
+        for (int d = 0; d < 9; ++d) {
+            frames[2 * d] = -1L;
+            frames[2 * d + 1] = ALL_HI;
+        }
+        boolean ok = true;
+        for (int i = 0; i < CELLS && ok; ++i)
+            if (puzzle[i] >= 0)
+                ok = assign(0, i, puzzle[i]);
+        return search(ok && propagate(0));
+    }
+
+    /**
+     * Continues the last search for another solution. Returns {@code false}
+     * if there is no more solution.
+     */
+    boolean next() {
+        if (!active)
+            return false;
+        aborted = false;
+        return search(false);
+    }
+
+    /** Discards the state of the last search. */
+    void clear() {
+        active = false;
+    }
+
+    void abort() {
+        aborted = true;
+    }
+
+    /** Returns the number of guesses made since the last solve. */
+    int getGuesses() {
+        return guesses;
+    }
+
+    /** Returns the solution found last. The array must not be modified. */
+    int[] getGrid() {
+        return grid;
+    }
+
+    private boolean search(boolean ok) {
+        for (;;) {
+            if (aborted)
+                return false;
+            int base = depth * FRAME;
+            if (ok) {
+                if (frames[base + SOLVED] == -1L
+                        && frames[base + SOLVED + 1] == ALL_HI) {
+                    writeGrid(base);
+                    return true;
+                }
+                int cell = chooseCell(base);
+                int mask = 0;
+                for (int d = 0; d < 9; ++d)
+                    if (has(base, d, cell))
+                        mask |= 1 << d;
+                ++depth;
+                branchCells[depth] = cell;
+                remaining[depth] = mask;
+            } else {
+                while (depth > 0 && remaining[depth] == 0)
+                    --depth;
+                if (depth == 0) {
+                    active = false;
+                    return false;
+                }
+            }
+            base = depth * FRAME;
+            System.arraycopy(frames, base - FRAME, frames, base, FRAME);
+            int d = Integer.numberOfTrailingZeros(remaining[depth]);
+            remaining[depth] &= remaining[depth] - 1;
+            ++guesses;
+            ok = assign(base, branchCells[depth], d) && propagate(base);
+        }
+    }
+
+    private boolean has(int base, int d, int cell) {
+        return cell < 64
+                ? (frames[base + 2 * d] & (1L << cell)) != 0
+                : (frames[base + 2 * d + 1] & (1L << (cell - 64))) != 0;
+    }
+
+    private boolean assign(int base, int cell, int d) {
+        if (!has(base, d, cell))
+            return false;
+        long lo = cell < 64 ? 1L << cell : 0;
+        long hi = cell < 64 ? 0 : 1L << (cell - 64);
+        for (int e = 0; e < 9; ++e) {
+            if (e != d) {
+                frames[base + 2 * e] &= ~lo;
+                frames[base + 2 * e + 1] &= ~hi;
+            }
+        }
+        frames[base + 2 * d] &= ~PEERS_LO[cell];
+        frames[base + 2 * d + 1] &= ~PEERS_HI[cell];
+        frames[base + SOLVED] |= lo;
+        frames[base + SOLVED + 1] |= hi;
+        return true;
+    }
+
+    /**
+     * Assigns naked and hidden singles until there is none. Returns
+     * {@code false} if a cell has no candidates or a symbol has no place in
+     * a unit.
+     */
+    private boolean propagate(int base) {
+        for (;;) {
+            long freeLo = ~frames[base + SOLVED];
+            long freeHi = ~frames[base + SOLVED + 1] & ALL_HI;
+            long onceLo = 0, onceHi = 0, twiceLo = 0, twiceHi = 0;
+            for (int d = 0; d < 9; ++d) {
+                long lo = frames[base + 2 * d] & freeLo;
+                long hi = frames[base + 2 * d + 1] & freeHi;
+                twiceLo |= onceLo & lo;
+                twiceHi |= onceHi & hi;
+                onceLo |= lo;
+                onceHi |= hi;
+            }
+            if ((freeLo & ~onceLo) != 0 || (freeHi & ~onceHi) != 0)
+                return false;
+            long singlesLo = onceLo & ~twiceLo;
+            long singlesHi = onceHi & ~twiceHi;
+            if ((singlesLo | singlesHi) != 0) {
+                while (singlesLo != 0) {
+                    int cell = Long.numberOfTrailingZeros(singlesLo);
+                    singlesLo &= singlesLo - 1;
+                    if (!assignSingle(base, cell))
+                        return false;
+                }
+                while (singlesHi != 0) {
+                    int cell = 64 + Long.numberOfTrailingZeros(singlesHi);
+                    singlesHi &= singlesHi - 1;
+                    if (!assignSingle(base, cell))
+                        return false;
+                }
+                continue;
+            }
+            boolean found = false;
+            for (int d = 0; d < 9; ++d) {
+                for (int u = 0; u < 27; ++u) {
+                    long lo = frames[base + 2 * d] & UNITS_LO[u];
+                    long hi = frames[base + 2 * d + 1] & UNITS_HI[u];
+                    int n = Long.bitCount(lo) + Long.bitCount(hi);
+                    if (n == 0)
+                        return false;
+                    if (n == 1 && ((lo & freeLo) | (hi & freeHi)) != 0) {
+                        int cell = lo != 0
+                                ? Long.numberOfTrailingZeros(lo)
+                                : 64 + Long.numberOfTrailingZeros(hi);
+                        if (!assign(base, cell, d))
+                            return false;
+                        found = true;
+                    }
+                }
+            }
+            if (!found)
+                return true;
+        }
+    }
+
+    /** Assigns the only candidate of the cell, which may have been lost. */
+    private boolean assignSingle(int base, int cell) {
+        for (int d = 0; d < 9; ++d)
+            if (has(base, d, cell))
+                return assign(base, cell, d);
+        return false;
+    }
+
+    /** Returns a free cell with the fewest candidates. */
+    private int chooseCell(int base) {
+        int best = -1;
+        int bestCount = 10;
+        for (int i = 0; i < CELLS; ++i) {
+            if (i < 64 ? (frames[base + SOLVED] & (1L << i)) != 0
+                    : (frames[base + SOLVED + 1] & (1L << (i - 64))) != 0)
+                continue;
+            int count = 0;
+            for (int d = 0; d < 9; ++d)
+                if (has(base, d, i))
+                    ++count;
+            if (count < bestCount) {
+                best = i;
+                bestCount = count;
+                if (count == 2)
+                    break;
+            }
+        }
+        return best;
+    }
+
+    private void writeGrid(int base) {
+        for (int i = 0; i < CELLS; ++i)
+            for (int d = 0; d < 9; ++d)
+                if (has(base, d, i))
+                    grid[i] = d;
+    }
+
+    private static void setBit(long[] lo, long[] hi, int k, int cell) {
+        if (cell < 64)
+            lo[k] |= 1L << cell;
+        else
+            hi[k] |= 1L << (cell - 64);
+    }
+}
@@ -0,0 +1,173 @@
+package net.lemonfactory.sudokusolver;
+
+import net.lemonfactory.sudokusolver.internal.PropagationKernel;
+
+/**
+ * <p>
+ * Propagator that only assigns naked and hidden singles, with the candidates
+ * of each cell held in one {@code long}, so it supports structures of size 64
+ * or less. It is much lighter than {@link SudokuSolver}: there is no trail,
+ * no queue and no technique, and all buffers are allocated once, so
+ * {@link #propagate(int[])} allocates nothing.
+ * </p>
+ * <p>
+ * Thread-safety is not guaranteed.
+ * </p>
+ *
+ * @author Choongmin Lee
+ * @see SudokuPipeline
+ */
+final class SinglesPropagator {
+
+    /* Results of propagate. */
+    static final int CONTRADICTION = 0;
+    static final int SOLVED = 1;
+    static final int UNRESOLVED = 2;
+
+    private final SolverPlan plan;
+    private final PropagationKernel kernel;
+    private final int size;
+    private final int totalCells;
+    private final long full;
+
+    private final int[] grid;
+    private final long[] candidates;
+    private final int[] pending;     // assigned cells not yet propagated
+    private final int[] singles;     // naked singles found by the kernel
+    private int numPending;
+    private int numAssigned;
+
+    SinglesPropagator(SolverPlan plan, PropagationKernel kernel) {
+        if (plan.size > 64)
+            throw new IllegalArgumentException("size > 64: " + plan.size);
+        this.plan = plan;
+        this.kernel = kernel;
+        this.size = plan.size;
+        this.totalCells = plan.totalCells;
+        this.full = -1L >>> (64 - size);
+        this.grid = new int[totalCells];
+        this.candidates = new long[totalCells];
+        this.pending = new int[totalCells];
+        int maxNeighbors = 0;
+        for (int i = 0; i < totalCells; ++i)
+            maxNeighbors = Math.max(maxNeighbors,
+                    plan.neighborStart[i + 1] - plan.neighborStart[i]);
+        this.singles = new int[maxNeighbors];
+    }
+
+    /**
+     * Propagates the specified puzzle, given as symbol indexes with -1 for a
+     * blank cell, and returns {@link #CONTRADICTION}, {@link #SOLVED} or
+     * {@link #UNRESOLVED}. Two neighbor clues of the same symbol are a
+     * contradiction.
+     */
+    int propagate(int[] puzzle) {
+        numPending = 0;
+        numAssigned = 0;
+        for (int i = 0; i < totalCells; ++i) {
+            grid[i] = -1;
+            candidates[i] = full;
+        }
+        for (int i = 0; i < totalCells; ++i) {
+            int symbol = puzzle[i];
+            if (symbol >= size || symbol < -1)
+                return CONTRADICTION;
+            if (symbol >= 0 && !assign(i, symbol))
+                return CONTRADICTION;
+        }
+        for (;;) {
+            if (!propagatePending())
+                return CONTRADICTION;
+            if (numAssigned == totalCells)
+                return SOLVED;
+            int found = findHiddenSingles();
+            if (found < 0)
+                return CONTRADICTION;
+            if (found == 0)
+                return UNRESOLVED;
+        }
+    }
+
+    /**
+     * Returns the grid after the last propagation, where -1 is a blank cell.
+     * The returned array must not be modified.
+     */
+    int[] getGrid() {
+        return grid;
+    }
+
+    private boolean assign(int cell, int symbol) {
+        if ((candidates[cell] & (1L << symbol)) == 0)
+            return false;
+        grid[cell] = symbol;
+        candidates[cell] = 1L << symbol;
+        pending[numPending++] = cell;
+        ++numAssigned;
+        return true;
+    }
+
+    /** Removes assigned symbols from neighbors, assigning naked singles. */
+    private boolean propagatePending() {
+        while (numPending > 0) {
+            int cell = pending[--numPending];
+            int n = kernel.eliminate(
+                    cell, 1L << grid[cell], candidates, grid, singles);
+            if (n < 0)
+                return false;
+            for (int k = 0; k < n; ++k) {
+                int j = singles[k];
+                if (!assign(j, Long.numberOfTrailingZeros(candidates[j])))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Assigns the symbols that have only one place in a cell group of
+     * {@code size} cells. Returns
+     * the number of assigned cells, or -1 if a symbol has no place in a cell
+     * group.
+     */
+    private int findHiddenSingles() {
+        int[] groupStart = plan.groupStart;
+        int[] groupCells = plan.groupCells;
+        int found = 0;
+        for (int g = 0; g < plan.numCellGroups; ++g) {
+            int start = groupStart[g];
+            int end = groupStart[g + 1];
+            if (end - start != size)
+                continue;
+            long once = 0;
+            long twice = 0;
+            long assigned = 0;
+            for (int m = start; m < end; ++m) {
+                int i = groupCells[m];
+                long c = candidates[i];
+                if (grid[i] >= 0) {
+                    assigned |= c;
+                } else {
+                    twice |= once & c;
+                    once |= c;
+                }
+            }
+            if ((once | assigned) != full)
+                return -1;
+            long singles = once & ~twice & ~assigned;
+            while (singles != 0) {
+                long bit = singles & -singles;
+                singles ^= bit;
+                for (int m = start; m < end; ++m) {
+                    int i = groupCells[m];
+                    if (grid[i] < 0 && (candidates[i] & bit) != 0) {
+                        if (!assign(i, Long.numberOfTrailingZeros(bit)))
+                            return -1;
+                        ++found;
+                        break;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+}
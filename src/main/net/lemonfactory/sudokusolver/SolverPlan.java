@@ -0,0 +1,181 @@
+package net.lemonfactory.sudokusolver;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.lemonfactory.sudokusolver.internal.PropagationKernel;
+import net.lemonfactory.sudokusolver.internal.PropagationKernels;
+import net.lemonfactory.sudokusolver.type.SudokuTypeStructure;
+
+/**
+ * <p>
+ * Compiled form of a {@link SudokuTypeStructure} for solvers. The neighbor
+ * cells, the cells of cell groups, the cell groups of cells, and the
+ * differences between cell groups that share more than one cell are kept as
+ * flat {@code int} arrays, where the entries of row {@code i} of a table are
+ * at {@code [start[i], start[i + 1])} of its data array. The first three are
+ * the tables of the structure itself (see
+ * {@link SudokuTypeStructure#getNeighborCellOffsets()}).
+ * </p>
+ * <p>
+ * A plan holds no search state; it is immutable and shared by all solvers of
+ * equal structures, whatever thread they run in. Each solver only keeps its
+ * own grid, candidates, operation stack and queue.
+ * </p>
+ *
+ * @author Choongmin Lee
+ * @see SudokuSolver
+ */
+public final class SolverPlan {
+
+    private static final Map<SudokuTypeStructure, SolverPlan> PLANS =
+            Collections.synchronizedMap(
+                new WeakHashMap<SudokuTypeStructure, SolverPlan>());
+
+    final int size;
+    final int totalCells;
+    final int numCellGroups;
+
+    final int[] neighborStart;    // index: cell
+    final int[] neighbors;
+    final int[] groupStart;       // index: cell group index
+    final int[] groupCells;
+    final int[] memberStart;      // index: cell
+    final int[] memberGroups;
+
+    /* Cell groups sharing more than one cell; pair p is
+       (pairs[2 * p], pairs[2 * p + 1]). Row 2 * p of the diff table is the
+       first group minus the second, and row 2 * p + 1 is the reverse. */
+    final int[] pairs;
+    final int[] diffStart;
+    final int[] diffCells;
+
+    /* For structures of overlapping grids, whose number of cells is not the
+       square of the size; shared[i] is true if cell i belongs to more cell
+       groups than the other cells. */
+    final boolean multiGrid;
+    final boolean[] shared;
+
+    /* Kernels of singles propagation; the specialized one is compiled on
+       first use, and is the generic one if compilation fails. */
+    final PropagationKernel genericKernel;
+    private final AtomicReference<PropagationKernel> specializedKernel =
+            new AtomicReference<PropagationKernel>();
+
+    private SolverPlan(SudokuTypeStructure structure) {
+        size = structure.size();
+        totalCells = structure.getTotalCells();
+        numCellGroups = structure.getNumCellGroups();
+
+        neighborStart = structure.getNeighborCellOffsets();
+        neighbors = structure.getNeighborCellTable();
+        groupStart = structure.getCellGroupOffsets();
+        groupCells = structure.getCellGroupTable();
+        memberStart = structure.getCellGroupIndexOffsets();
+        memberGroups = structure.getCellGroupIndexTable();
+
+        List<int[]> pairList = new ArrayList<int[]>();
+        int[] intersecting = structure.getIntersectingCellGroupPairs();
+        for (int p = 0; p < intersecting.length; p += 2) {
+            int g1 = intersecting[p];
+            int g2 = intersecting[p + 1];
+            if (structure.getNumIntersections(g1, g2) > 1)
+                pairList.add(new int[] {g1, g2});
+        }
+        pairs = new int[pairList.size() * 2];
+        int[][] rows = new int[pairs.length][];
+        for (int p = 0; p < pairList.size(); ++p) {
+            int g1 = pairList.get(p)[0];
+            int g2 = pairList.get(p)[1];
+            pairs[2 * p] = g1;
+            pairs[2 * p + 1] = g2;
+            rows[2 * p] = structure.getCellGroupDiff(g1, g2);
+            rows[2 * p + 1] = structure.getCellGroupDiff(g2, g1);
+        }
+        diffStart = makeStarts(rows);
+        diffCells = flatten(rows, diffStart);
+
+        multiGrid = totalCells != size * size;
+        shared = new boolean[totalCells];
+        int minGroups = Integer.MAX_VALUE;
+        for (int i = 0; i < totalCells; ++i)
+            minGroups = Math.min(minGroups, memberStart[i + 1] - memberStart[i]);
+        for (int i = 0; i < totalCells; ++i)
+            shared[i] = memberStart[i + 1] - memberStart[i] > minGroups;
+
+        genericKernel = PropagationKernels.generic(neighborStart, neighbors);
+    }
+
+    /**
+     * Returns the plan for the specified structure. Equal structures share
+     * the same plan.
+     *
+     * @param structure structure to be compiled
+     * @return the plan for the structure
+     */
+    public static SolverPlan getInstance(SudokuTypeStructure structure) {
+        SolverPlan plan = PLANS.get(structure);
+        if (plan == null) {
+            plan = new SolverPlan(structure);
+            PLANS.put(structure, plan);
+        }
+        return plan;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTotalCells() {
+        return totalCells;
+    }
+
+    public int getNumCellGroups() {
+        return numCellGroups;
+    }
+
+    /**
+     * Returns {@code true} if the structure of this plan consists of
+     * overlapping grids, such as Samurai. Solvers of such a plan branch on
+     * the cells shared by grids first, and do not retry guesses made in a
+     * part of the board which is independent of the part that failed.
+     *
+     * @return {@code true} if the structure consists of overlapping grids
+     */
+    public boolean isMultiGrid() {
+        return multiGrid;
+    }
+
+    /**
+     * Returns the kernel of singles propagation specialized for the
+     * structure of this plan, compiling it on first use, or the generic
+     * kernel if it cannot be compiled. The compilation takes a while, but no
+     * lock is held; threads that ask at the same time compile on their own,
+     * and the first kernel published is kept.
+     */
+    PropagationKernel getSpecializedKernel() {
+        PropagationKernel kernel = specializedKernel.get();
+        if (kernel == null) {
+            kernel = PropagationKernels.compile(neighborStart, neighbors);
+            if (kernel == null)
+                kernel = genericKernel;
+            if (!specializedKernel.compareAndSet(null, kernel))
+                kernel = specializedKernel.get();
+        }
+        return kernel;
+    }
+
+    private static int[] makeStarts(int[][] rows) {
+        int[] starts = new int[rows.length + 1];
+        for (int i = 0; i < rows.length; ++i)
+            starts[i + 1] = starts[i] + rows[i].length;
+        return starts;
+    }
+
+    private static int[] flatten(int[][] rows, int[] starts) {
+        int[] data = new int[starts[rows.length]];
+        for (int i = 0; i < rows.length; ++i)
+            System.arraycopy(rows[i], 0, data, starts[i], rows[i].length);
+        return data;
+    }
+}
@@ -0,0 +1,111 @@
+package net.lemonfactory.sudokusolver;
+
+import java.util.*;
+
+import net.lemonfactory.sudokusolver.type.SudokuTypeStructure;
+
+/**
+ * Candidate cell permutations of square grids and a test of whether a
+ * permutation is a symmetry of a structure. A permutation is given as an
+ * array which maps each cell to its image.
+ *
+ * @author Choongmin Lee
+ */
+final class StructureSymmetries {
+
+    /**
+     * Utility class.
+     */
+    private StructureSymmetries() {}
+
+    /**
+     * Returns {@code true} if the cells of the structure form a square grid,
+     * so that the permutations of this class can be applied.
+     */
+    static boolean isSquare(SudokuTypeStructure structure) {
+        int size = structure.size();
+        return structure.getTotalCells() == size * size;
+    }
+
+    /**
+     * Returns the rotations and reflections of a square grid with the
+     * specified size, except the identity.
+     */
+    static List<int[]> makeDihedralPermutations(int size) {
+        List<int[]> perms = new ArrayList<int[]>();
+        for (int t = 1; t < 8; ++t) {
+            int[] p = new int[size * size];
+            for (int r = 0; r < size; ++r) {
+                for (int c = 0; c < size; ++c) {
+                    int r2 = (t & 1) != 0 ? size - 1 - r : r;
+                    int c2 = (t & 2) != 0 ? size - 1 - c : c;
+                    p[r * size + c] = (t & 4) != 0
+                            ? c2 * size + r2 : r2 * size + c2;
+                }
+            }
+            perms.add(p);
+        }
+        return perms;
+    }
+
+    /**
+     * Returns the swaps of two rows, two columns, and two bands or stacks of
+     * every height or width dividing the size of a square grid.
+     */
+    static List<int[]> makeSwapPermutations(int size) {
+        List<int[]> perms = new ArrayList<int[]>();
+        for (int h = 1; h < size; ++h) {
+            if (size % h != 0)
+                continue;
+            for (int b1 = 0; b1 < size / h; ++b1) {
+                for (int b2 = b1 + 1; b2 < size / h; ++b2) {
+                    int[] rows = new int[size * size];
+                    int[] cols = new int[size * size];
+                    for (int r = 0; r < size; ++r) {
+                        int r2 = r;
+                        if (r / h == b1)
+                            r2 = r + (b2 - b1) * h;
+                        else if (r / h == b2)
+                            r2 = r - (b2 - b1) * h;
+                        for (int c = 0; c < size; ++c) {
+                            rows[r * size + c] = r2 * size + c;
+                            cols[c * size + r] = c * size + r2;
+                        }
+                    }
+                    perms.add(rows);
+                    perms.add(cols);
+                }
+            }
+        }
+        return perms;
+    }
+
+    /**
+     * Returns the keys of all cell groups of the structure, to be used by
+     * {@link #mapsCellGroups(SudokuTypeStructure, Set, int[])}.
+     */
+    static Set<String> makeCellGroupKeys(SudokuTypeStructure structure) {
+        Set<String> keys = new HashSet<String>();
+        for (int g = 0, n = structure.getNumCellGroups(); g < n; ++g)
+            keys.add(Arrays.toString(structure.getCellGroup(g)));
+        return keys;
+    }
+
+    /**
+     * Returns {@code true} if the permutation maps every cell group of the
+     * structure to a cell group.
+     */
+    static boolean mapsCellGroups(
+            SudokuTypeStructure structure, Set<String> keys, int[] perm) {
+        int[] image = new int[structure.size()];
+        for (int g = 0, n = structure.getNumCellGroups(); g < n; ++g) {
+            int[] cellGroup = structure.getCellGroup(g);
+            for (int i = 0; i < cellGroup.length; ++i)
+                image[i] = perm[cellGroup[i]];
+            Arrays.sort(image);
+            if (!keys.contains(Arrays.toString(image)))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,299 @@
+package net.lemonfactory.sudokusolver;
+
+import net.lemonfactory.sudokusolver.type.SudokuTypeStructure;
+
+/**
+ * <p>
+ * Solver of many small puzzles of the same structure, such as 4×4, 6×6 or
+ * 9×9 ones, which propagates several puzzles in lockstep. The candidates of
+ * one cell of four puzzles are packed in one {@code long}, a 16-bit lane per
+ * puzzle, so every mask operation of propagation advances four puzzles at
+ * once (SIMD within a register). Assigned symbols are eliminated from
+ * neighbor cells, and naked and hidden singles are assigned, for all lanes
+ * together until no lane changes.
+ * </p>
+ * <p>
+ * A lane that ends up with a cell without candidates has no solution, and a
+ * lane whose cells are all assigned is solved. The remaining lanes, which
+ * would need guessing, fall back to a {@link SudokuSolver} one by one.
+ * </p>
+ * <p>
+ * Only structures of size 15 or less are supported. Thread-safety is not
+ * guaranteed; use one batch solver per thread.
+ * </p>
+ *
+ * @author Choongmin Lee
+ * @see SudokuPipeline
+ */
+public final class SudokuBatchSolver {
+
+    private static final int LANE_BITS = 16;
+    private static final int LANES_PER_WORD = 64 / LANE_BITS;
+    private static final long ONES = 0x0001000100010001L;   // lowest bits
+    private static final long GUARDS = 0x8000800080008000L; // highest bits
+
+    /** Number of words per cell, so the number of lanes of one pass. */
+    private static final int WORDS = 4;
+    private static final int LANES = WORDS * LANES_PER_WORD;
+
+    private final SolverPlan plan;
+    private final int size;
+    private final int totalCells;
+    private final long fullWord;
+
+    /* Row w of these tables (from w * totalCells) is word w of each cell. */
+    private final long[] candidates;
+    private final long[] assigned;
+    private final long[] dead;        // guard bits of lanes without solution
+    private final boolean[] invalid;  // lanes with invalid clues
+
+    private final SudokuSolver fallback;
+
+    private long solvedInLanes;
+    private long rejectedInLanes;
+    private long escalated;
+
+    /**
+     * Creates a batch solver for the specified structure.
+     *
+     * @param structure structure of puzzles to be solved
+     * @throws IllegalArgumentException if the size of the structure is
+     *     greater than 15
+     */
+    public SudokuBatchSolver(SudokuTypeStructure structure) {
+        if (structure.size() >= LANE_BITS)
+            throw new IllegalArgumentException(
+                    "size >= " + LANE_BITS + ": " + structure.size());
+        fallback = new SudokuSolver(structure);
+        plan = fallback.getPlan();
+        size = plan.size;
+        totalCells = plan.totalCells;
+        fullWord = ((1L << size) - 1) * ONES;
+        candidates = new long[WORDS * totalCells];
+        assigned = new long[WORDS * totalCells];
+        dead = new long[WORDS];
+        invalid = new boolean[LANES];
+    }
+
+    /**
+     * Solves the specified puzzles, given as symbol indexes with -1 for a
+     * blank cell, writing the solution of {@code puzzles[k]} into
+     * {@code solutions[k]} and whether it was solved into {@code solved[k]}.
+     * The content of {@code solutions[k]} is undefined if the puzzle has no
+     * solution or is not valid.
+     *
+     * @param puzzles puzzles to be solved
+     * @param solutions arrays into which the solutions are written, of the
+     *     same length as {@code puzzles}
+     * @param solved array into which whether each puzzle was solved is
+     *     written, of the same length as {@code puzzles}
+     * @return the number of solved puzzles
+     * @throws IllegalArgumentException if the lengths of the arrays do not
+     *     match
+     */
+    public int solve(int[][] puzzles, int[][] solutions, boolean[] solved) {
+        if (solutions.length != puzzles.length)
+            throw new IllegalArgumentException(
+                    "solutions.length != puzzles.length: " + solutions.length
+                     + " != " + puzzles.length);
+        if (solved.length != puzzles.length)
+            throw new IllegalArgumentException(
+                    "solved.length != puzzles.length: " + solved.length
+                     + " != " + puzzles.length);
+        for (int k = 0; k < puzzles.length; ++k) {
+            if (puzzles[k].length != totalCells)
+                throw new IllegalArgumentException(
+                        "puzzles[" + k + "].length != totalCells: "
+                         + puzzles[k].length + " != " + totalCells);
+            if (solutions[k].length != totalCells)
+                throw new IllegalArgumentException(
+                        "solutions[" + k + "].length != totalCells: "
+                         + solutions[k].length + " != " + totalCells);
+        }
+        int count = 0;
+        for (int from = 0; from < puzzles.length; from += LANES) {
+            int n = Math.min(LANES, puzzles.length - from);
+            load(puzzles, from, n);
+            propagate();
+            for (int lane = 0; lane < n; ++lane) {
+                int k = from + lane;
+                solved[k] = finish(lane, puzzles[k], solutions[k]);
+                if (solved[k])
+                    ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of puzzles solved by lockstep propagation alone.
+     *
+     * @return the number of puzzles solved in lanes
+     */
+    public long getSolvedInLanes() {
+        return solvedInLanes;
+    }
+
+    /**
+     * Returns the number of puzzles found to have no solution by lockstep
+     * propagation, including the puzzles that are not valid.
+     *
+     * @return the number of puzzles rejected in lanes
+     */
+    public long getRejectedInLanes() {
+        return rejectedInLanes;
+    }
+
+    /**
+     * Returns the number of puzzles that fell back to {@link SudokuSolver}.
+     *
+     * @return the number of escalated puzzles
+     */
+    public long getEscalated() {
+        return escalated;
+    }
+
+    /**
+     * Resets all statistics to zero.
+     */
+    public void resetStatistics() {
+        solvedInLanes = 0;
+        rejectedInLanes = 0;
+        escalated = 0;
+    }
+
+    private void load(int[][] puzzles, int from, int n) {
+        for (int k = 0; k < WORDS * totalCells; ++k) {
+            candidates[k] = fullWord;
+            assigned[k] = 0;
+        }
+        for (int w = 0; w < WORDS; ++w)
+            dead[w] = 0;
+        for (int lane = 0; lane < LANES; ++lane) {
+            invalid[lane] = false;
+            if (lane >= n)
+                continue;
+            int[] puzzle = puzzles[from + lane];
+            int row = lane / LANES_PER_WORD * totalCells;
+            int shift = lane % LANES_PER_WORD * LANE_BITS;
+            long laneMask = 0xFFFFL << shift;
+            for (int i = 0; i < totalCells; ++i) {
+                int symbol = puzzle[i];
+                if (symbol < -1 || symbol >= size) {
+                    invalid[lane] = true;
+                } else if (symbol >= 0) {
+                    long bit = 1L << (symbol + shift);
+                    candidates[row + i] = candidates[row + i] & ~laneMask | bit;
+                    assigned[row + i] |= bit;
+                }
+            }
+        }
+    }
+
+    /** Propagates all lanes until no lane changes. */
+    private void propagate() {
+        int[] neighborStart = plan.neighborStart;
+        int[] neighbors = plan.neighbors;
+        int[] groupStart = plan.groupStart;
+        int[] groupCells = plan.groupCells;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int w = 0; w < WORDS; ++w) {
+                int row = w * totalCells;
+
+                /* Eliminate assigned symbols and assign naked singles. */
+                for (int i = 0; i < totalCells; ++i) {
+                    long eliminated = 0;
+                    for (int k = neighborStart[i]; k < neighborStart[i + 1]; ++k)
+                        eliminated |= assigned[row + neighbors[k]];
+                    long c = candidates[row + i] & ~eliminated;
+                    long empty = zeroLanes(c);
+                    dead[w] |= empty;
+                    long singles = zeroLanes(c & ((c | GUARDS) - ONES))
+                            & ~empty & zeroLanes(assigned[row + i]);
+                    long a = assigned[row + i] | c & expand(singles);
+                    if (c != candidates[row + i] || a != assigned[row + i]) {
+                        candidates[row + i] = c;
+                        assigned[row + i] = a;
+                        changed = true;
+                    }
+                }
+
+                /* Assign hidden singles. */
+                for (int g = 0; g < plan.numCellGroups; ++g) {
+                    int start = groupStart[g];
+                    int end = groupStart[g + 1];
+                    if (end - start != size)
+                        continue;
+                    long once = 0;
+                    long twice = 0;
+                    long done = 0;
+                    for (int m = start; m < end; ++m) {
+                        long c = candidates[row + groupCells[m]];
+                        twice |= once & c;
+                        once |= c;
+                        done |= assigned[row + groupCells[m]];
+                    }
+                    dead[w] |= ~zeroLanes(fullWord & ~once) & GUARDS;
+                    long hidden = once & ~twice & ~done;
+                    if (hidden == 0)
+                        continue;
+                    for (int m = start; m < end; ++m) {
+                        int i = row + groupCells[m];
+                        long h = candidates[i] & hidden;
+                        if (h != 0) {
+                            long lanes = expand(~zeroLanes(h) & GUARDS);
+                            long c = candidates[i] & ~lanes | h;
+                            if (c != candidates[i]) {
+                                candidates[i] = c;
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the solution of the lane, solving it by the fallback solver if
+     * needed. Returns {@code true} if the puzzle is solved.
+     */
+    private boolean finish(int lane, int[] puzzle, int[] solution) {
+        int row = lane / LANES_PER_WORD * totalCells;
+        int shift = lane % LANES_PER_WORD * LANE_BITS;
+        if (invalid[lane]
+                || (dead[lane / LANES_PER_WORD] >>> shift & 0x8000L) != 0) {
+            ++rejectedInLanes;
+            return false;
+        }
+        boolean complete = true;
+        for (int i = 0; i < totalCells && complete; ++i) {
+            int a = (int) (assigned[row + i] >>> shift) & 0xFFFF;
+            if (a == 0)
+                complete = false;
+            else
+                solution[i] = Integer.numberOfTrailingZeros(a);
+        }
+        if (complete) {
+            ++solvedInLanes;
+            return true;
+        }
+        ++escalated;
+        if (!fallback.setPuzzle(puzzle) || !fallback.solvePuzzle())
+            return false;
+        fallback.getSolution(solution);
+        return true;
+    }
+
+    /** Returns the guard bits of the lanes of the word that are zero. */
+    private static long zeroLanes(long x) {
+        return ~((x | GUARDS) - ONES) & GUARDS;
+    }
+
+    /** Expands the guard bits to whole lanes. */
+    private static long expand(long guards) {
+        return (guards >>> (LANE_BITS - 1)) * 0xFFFFL;
+    }
+}
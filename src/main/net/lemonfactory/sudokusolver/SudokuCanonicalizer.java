@@ -0,0 +1,231 @@
+package net.lemonfactory.sudokusolver;
+
+import java.util.*;
+
+import net.lemonfactory.sudokusolver.type.SudokuTypeStructure;
+
+/**
+ * <p>
+ * Maps puzzles to a canonical form, so that puzzles that differ only in the
+ * orientation of the grid or in the labeling of symbols have the same form.
+ * </p>
+ * <p>
+ * Orientations are the rotations and reflections that map every cell group
+ * of the structure to a cell group; for structures whose cells do not form a
+ * square grid, only the identity is used. The canonical form is the
+ * lexicographically smallest puzzle among all orientations, with symbols
+ * relabeled in order of their first appearance.
+ * </p>
+ * <p>
+ * Instances of this class are immutable and thread-safe.
+ * </p>
+ *
+ * @author Choongmin Lee
+ * @see SudokuSolutionCache
+ */
+public final class SudokuCanonicalizer {
+
+    private static final Map<SudokuTypeStructure, SudokuCanonicalizer> INSTANCES =
+            Collections.synchronizedMap(
+                new WeakHashMap<SudokuTypeStructure, SudokuCanonicalizer>());
+
+    private final int size;
+    private final int totalCells;
+    private final long structureHash;
+
+    /* index: orientation, canonical cell; value: cell of the caller */
+    private final int[][] sources;
+
+    private SudokuCanonicalizer(SudokuTypeStructure structure) {
+        size = structure.size();
+        totalCells = structure.getTotalCells();
+        structureHash = structure.hashCode();
+        List<int[]> orientations = new ArrayList<int[]>();
+        int[] identity = new int[totalCells];
+        for (int i = 0; i < totalCells; ++i)
+            identity[i] = i;
+        orientations.add(identity);
+        if (StructureSymmetries.isSquare(structure)) {
+            Set<String> keys = StructureSymmetries.makeCellGroupKeys(structure);
+            for (int[] p : StructureSymmetries.makeDihedralPermutations(size)) {
+                if (!StructureSymmetries.mapsCellGroups(structure, keys, p))
+                    continue;
+                int[] inverse = new int[totalCells];
+                for (int i = 0; i < totalCells; ++i)
+                    inverse[p[i]] = i;
+                orientations.add(inverse);
+            }
+        }
+        sources = orientations.toArray(new int[orientations.size()][]);
+    }
+
+    /**
+     * Returns the canonicalizer for the specified structure.
+     *
+     * @param structure structure of puzzles to be canonicalized
+     * @return the canonicalizer for the structure
+     */
+    public static SudokuCanonicalizer getInstance(SudokuTypeStructure structure) {
+        SudokuCanonicalizer canonicalizer = INSTANCES.get(structure);
+        if (canonicalizer == null) {
+            canonicalizer = new SudokuCanonicalizer(structure);
+            INSTANCES.put(structure, canonicalizer);
+        }
+        return canonicalizer;
+    }
+
+    /**
+     * Returns the number of orientations, including the identity, which are
+     * tried for the structure.
+     *
+     * @return the number of orientations
+     */
+    public int getNumOrientations() {
+        return sources.length;
+    }
+
+    /**
+     * Returns the canonical form of the specified puzzle, given as symbol
+     * indexes with -1 for blank cells.
+     *
+     * @param puzzle symbol indexes of the puzzle
+     * @return the canonical form of the puzzle
+     */
+    public Form canonicalize(int[] puzzle) {
+        if (puzzle.length != totalCells)
+            throw new IllegalArgumentException(
+                    "puzzle.length != totalCells: " + puzzle.length
+                     + " != " + totalCells);
+        int[] best = new int[totalCells];
+        int[] labels = new int[size];
+        int bestOrientation = -1;
+        for (int o = 0; o < sources.length; ++o)
+            if (relabel(puzzle, sources[o], labels, best, bestOrientation < 0))
+                bestOrientation = o;
+        relabel(puzzle, sources[bestOrientation], labels, best, true);
+        return new Form(best, sources[bestOrientation], labels);
+    }
+
+    /**
+     * Writes the puzzle seen in the orientation, with symbols relabeled, into
+     * best if it is smaller than best or if force is {@code true}. Returns
+     * {@code true} if it was written. The relabeling is left in labels.
+     */
+    private boolean relabel(int[] puzzle, int[] source, int[] labels,
+                            int[] best, boolean force) {
+        Arrays.fill(labels, -1);
+        int next = 0;
+        int j = 0;
+        if (!force) {
+            for (; j < totalCells; ++j) {
+                int symbol = puzzle[source[j]];
+                int label = symbol;
+                if (symbol >= 0) {
+                    if (labels[symbol] < 0)
+                        labels[symbol] = next++;
+                    label = labels[symbol];
+                }
+                if (label > best[j])
+                    return false;
+                if (label < best[j])
+                    break;
+            }
+            if (j == totalCells)
+                return false;
+        }
+        for (; j < totalCells; ++j) {
+            int symbol = puzzle[source[j]];
+            if (symbol >= 0 && labels[symbol] < 0)
+                labels[symbol] = next++;
+            best[j] = symbol < 0 ? -1 : labels[symbol];
+        }
+        return true;
+    }
+
+    /**
+     * Canonical form of a puzzle, which remembers how to map grids between
+     * the canonical form and the original puzzle.
+     */
+    public final class Form {
+
+        private final int[] puzzle;
+        private final int[] source;
+        private final int[] toCanonical;  // index: symbol of the caller
+        private final int[] toCaller;     // index: canonical symbol
+        private final long fingerprint;
+
+        private Form(int[] puzzle, int[] source, int[] labels) {
+            this.puzzle = puzzle;
+            this.source = source;
+            this.toCanonical = labels.clone();
+            this.toCaller = new int[size];
+            int next = 0;
+            for (int i = 0; i < size; ++i)
+                if (toCanonical[i] >= 0)
+                    ++next;
+            for (int i = 0; i < size; ++i)
+                if (toCanonical[i] < 0)
+                    toCanonical[i] = next++;
+            for (int i = 0; i < size; ++i)
+                toCaller[toCanonical[i]] = i;
+            this.fingerprint = makeFingerprint();
+        }
+
+        /**
+         * Returns the canonical puzzle. The returned array must not be
+         * changed.
+         *
+         * @return the canonical puzzle
+         */
+        public int[] getPuzzle() {
+            return puzzle;
+        }
+
+        /**
+         * Returns a 64-bit hash of the structure and the canonical puzzle.
+         * Equivalent puzzles of the same structure have the same fingerprint.
+         *
+         * @return a 64-bit hash of the structure and the canonical puzzle
+         */
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Maps a grid of the original puzzle, such as its solution, to the
+         * canonical orientation and symbols.
+         *
+         * @param grid symbol indexes in the orientation of the original puzzle
+         * @return symbol indexes in the canonical orientation
+         */
+        public int[] toCanonical(int[] grid) {
+            int[] result = new int[totalCells];
+            for (int j = 0; j < totalCells; ++j) {
+                int symbol = grid[source[j]];
+                result[j] = symbol < 0 ? -1 : toCanonical[symbol];
+            }
+            return result;
+        }
+
+        /**
+         * Maps a grid in the canonical orientation, such as the solution of
+         * the canonical puzzle, back to the orientation and symbols of the
+         * original puzzle.
+         *
+         * @param grid symbol indexes in the canonical orientation
+         * @return symbol indexes in the orientation of the original puzzle
+         */
+        public int[] toCaller(int[] grid) {
+            int[] result = new int[totalCells];
+            for (int j = 0; j < totalCells; ++j) {
+                int symbol = grid[j];
+                result[source[j]] = symbol < 0 ? -1 : toCaller[symbol];
+            }
+            return result;
+        }
+
+        private long makeFingerprint() {
+            return SudokuGrids.fingerprint(structureHash, puzzle);
+        }
+    }
+}
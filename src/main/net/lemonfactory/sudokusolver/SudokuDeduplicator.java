@@ -0,0 +1,164 @@
+package net.lemonfactory.sudokusolver;
+
+import java.io.*;
+
+import net.lemonfactory.sudokusolver.internal.*;
+import net.lemonfactory.sudokusolver.type.SudokuType;
+
+/**
+ * <p>
+ * Streaming filter which drops duplicate puzzles, to be placed in front of a
+ * solver. Each puzzle is reduced to a 64-bit fingerprint, either of the
+ * puzzle as it is or of its canonical form (see {@link SudokuCanonicalizer}),
+ * in which case puzzles in other orientations or with other symbols are
+ * duplicates as well.
+ * </p>
+ * <p>
+ * A fingerprint is first tested against a Bloom filter; only when the filter
+ * reports that it might have been seen, it is checked against an exact set of
+ * fingerprints. Both are allocated at construction, so the memory is fixed.
+ * Once the exact set is full, new fingerprints are only added to the Bloom
+ * filter, and a puzzle which the filter reports as seen but the set does not
+ * contain is dropped as an <i>unverified</i> duplicate; the number of such
+ * puzzles is bounded by the false positive rate of the filter.
+ * </p>
+ * <p>
+ * Thread-safety is not guaranteed.
+ * </p>
+ *
+ * @author Choongmin Lee
+ */
+public final class SudokuDeduplicator {
+
+    private final boolean canonical;
+    private final BloomFilter filter;
+    private final LongHashSet seen;
+
+    private long accepted;
+    private long duplicates;
+    private long unverified;
+    private long invalid;
+
+    /**
+     * Creates a filter sized for the specified number of distinct puzzles.
+     *
+     * @param expectedPuzzles expected number of distinct puzzles, which is the
+     *     capacity of the exact set
+     * @param falsePositiveRate false positive rate of the Bloom filter
+     * @param canonical {@code true} if puzzles are compared by their
+     *     canonical forms
+     * @throws IllegalArgumentException if {@code expectedPuzzles} is less
+     *     than 1 or greater than {@link LongHashSet#MAX_CAPACITY}, or the
+     *     false positive rate is not between 0 and 1
+     */
+    public SudokuDeduplicator(int expectedPuzzles, double falsePositiveRate,
+                              boolean canonical) {
+        if (expectedPuzzles < 1)
+            throw new IllegalArgumentException(
+                    "expectedPuzzles < 1: " + expectedPuzzles);
+        if (expectedPuzzles > LongHashSet.MAX_CAPACITY)
+            throw new IllegalArgumentException(
+                    "expectedPuzzles > " + LongHashSet.MAX_CAPACITY + ": "
+                     + expectedPuzzles);
+        this.canonical = canonical;
+        this.filter = new BloomFilter(expectedPuzzles, falsePositiveRate);
+        this.seen = new LongHashSet(expectedPuzzles);
+    }
+
+    /**
+     * Returns {@code true} if the specified puzzle is valid and has not been
+     * seen before by this filter.
+     *
+     * @param type Sudoku type to be referenced to interpret symbols
+     * @param puzzle puzzle to be tested
+     * @return {@code true} if the puzzle is valid and has not been seen
+     */
+    public boolean accept(SudokuType type, String puzzle) {
+        if (!type.isValidPuzzle(puzzle)) {
+            ++invalid;
+            return false;
+        }
+        long fingerprint = fingerprint(type, puzzle);
+        if (filter.add(fingerprint)) {
+            if (seen.contains(fingerprint)) {
+                ++duplicates;
+                return false;
+            }
+            if (seen.isFull()) {
+                ++unverified;
+                return false;
+            }
+        }
+        if (!seen.isFull())
+            seen.add(fingerprint);
+        ++accepted;
+        return true;
+    }
+
+    /**
+     * Copies the puzzles in the input, one per line, to the output, except
+     * invalid and duplicate puzzles. Empty lines are skipped.
+     *
+     * @param type Sudoku type to be referenced to interpret symbols
+     * @param in input of puzzles
+     * @param out output of puzzles
+     * @return the number of puzzles written
+     * @throws IOException if an I/O error occurs
+     */
+    public long filter(SudokuType type, BufferedReader in, Writer out)
+            throws IOException {
+        long written = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.length() == 0 || !accept(type, line))
+                continue;
+            out.write(line);
+            out.write('\n');
+            ++written;
+        }
+        out.flush();
+        return written;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Returns the number of puzzles dropped because the Bloom filter reported
+     * them as seen after the exact set became full.
+     *
+     * @return the number of unverified duplicates
+     */
+    public long getUnverifiedDuplicates() {
+        return unverified;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    /**
+     * Returns the ratio of duplicates, including unverified ones, to all
+     * valid puzzles tested, or 0 if no valid puzzle has been tested.
+     *
+     * @return the ratio of duplicates to all valid puzzles tested
+     */
+    public double getDuplicateRate() {
+        long dropped = duplicates + unverified;
+        long total = accepted + dropped;
+        return total == 0 ? 0 : (double) dropped / total;
+    }
+
+    private long fingerprint(SudokuType type, String puzzle) {
+        if (canonical)
+            return SudokuGrids.canonicalize(type, puzzle).getFingerprint();
+        return SudokuGrids.fingerprint(type.getStructure().hashCode(),
+                                       SudokuGrids.toArray(type, puzzle));
+    }
+}
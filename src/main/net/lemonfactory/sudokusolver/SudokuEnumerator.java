@@ -0,0 +1,455 @@
+package net.lemonfactory.sudokusolver;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.lemonfactory.sudokusolver.type.*;
+
+/**
+ * <p>
+ * Counts all solutions of a puzzle, which is usually mostly empty, without
+ * visiting every solution one by one.
+ * </p>
+ * <p>
+ * Two kinds of symmetries are used. Symbols that do not appear in the puzzle
+ * can be relabeled freely, so only the solutions in which those symbols appear
+ * in ascending order along the empty cells of one cell group are enumerated,
+ * and the count is multiplied by the number of relabelings. The empty cells of
+ * a few more cell groups are then filled to split the search into prefix
+ * shards. Shards that are mapped to each other by a structural symmetry of the
+ * puzzle (a rotation, a reflection, or a swap of rows, columns, bands or
+ * stacks that maps every cell group of the structure to a cell group) have
+ * the same number of solutions, so only one shard of each orbit is counted.
+ * The remaining shards are counted in parallel.
+ * </p>
+ * <p>
+ * This class is thread-safe; each call to {@code countSolutions} uses its own
+ * solvers.
+ * </p>
+ *
+ * @author Choongmin Lee
+ * @see SudokuSolver#countSolutions(long)
+ */
+public final class SudokuEnumerator {
+
+    private static final int SHARDS_PER_THREAD = 64;
+    private static final int MAX_SHARDS = 1 << 15;
+    private static final int MAX_SYMMETRY_CELLS = 1296;
+
+    private final SudokuTypeStructure structure;
+    private final int size;
+    private final int totalCells;
+
+    private volatile int parallelism;
+
+    public SudokuEnumerator(SudokuTypeStructure structure) {
+        this.structure = structure;
+        this.size = structure.size();
+        this.totalCells = structure.getTotalCells();
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    public SudokuTypeStructure getStructure() {
+        return structure;
+    }
+
+    /**
+     * Returns the number of threads used to count shards.
+     *
+     * @return the number of threads used to count shards
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of threads used to count shards. The default is the
+     * number of available processors.
+     *
+     * @param parallelism the number of threads used to count shards
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException(
+                    "parallelism < 1: " + parallelism);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the number of solutions of the specified puzzle. Zero is
+     * returned if the puzzle is not valid.
+     *
+     * @param type Sudoku type to be referenced to interpret symbols in the
+     *     puzzle
+     * @param puzzle puzzle whose solutions to be counted
+     * @return the number of solutions of the puzzle
+     * @throws InterruptedException if interrupted while waiting for counting
+     *     threads
+     */
+    public BigInteger countSolutions(SudokuType type, String puzzle)
+            throws InterruptedException {
+        if (!structure.equals(type.getStructure()))
+            throw new IllegalArgumentException();
+        if (!type.isValidPuzzle(puzzle))
+            return BigInteger.ZERO;
+        int[] converted = new int[totalCells];
+        for (int i = 0; i < totalCells; ++i) {
+            char c = puzzle.charAt(i);
+            converted[i] = c == type.getBlank()
+                    ? -1 : type.getSymbols().indexOf(c);
+        }
+        return countSolutions(converted);
+    }
+
+    /**
+     * Returns the number of solutions of the specified puzzle, given as symbol
+     * indexes with -1 for blank cells. Zero is returned if the puzzle is not
+     * valid.
+     *
+     * @param puzzle symbol indexes of the puzzle
+     * @return the number of solutions of the puzzle
+     * @throws InterruptedException if interrupted while waiting for counting
+     *     threads
+     * @see SudokuSolver#setPuzzle(int[])
+     */
+    public BigInteger countSolutions(int[] puzzle) throws InterruptedException {
+        if (puzzle.length != totalCells)
+            throw new IllegalArgumentException(
+                    "puzzle.length != totalCells: " + puzzle.length
+                     + " != " + totalCells);
+        for (int i = 0; i < totalCells; ++i) {
+            int symbol = puzzle[i];
+            if (symbol < -1 || symbol >= size)
+                return BigInteger.ZERO;
+            if (symbol >= 0 && conflicts(puzzle, i, symbol))
+                return BigInteger.ZERO;
+        }
+        return new Enumeration(puzzle.clone()).count();
+    }
+
+    private boolean conflicts(int[] grid, int cell, int symbol) {
+        for (int j : structure.getNeighborCells(cell))
+            if (grid[j] == symbol)
+                return true;
+        return false;
+    }
+
+    private static BigInteger factorial(int n) {
+        BigInteger result = BigInteger.ONE;
+        for (int i = 2; i <= n; ++i)
+            result = result.multiply(BigInteger.valueOf(i));
+        return result;
+    }
+
+    /**
+     * State of a single call to {@code countSolutions}.
+     */
+    private final class Enumeration {
+
+        private final int[] puzzle;
+        private final boolean[] fresh;     // index: symbol
+        private final int[] freshSymbols;  // symbols not in the puzzle
+
+        private final boolean[] inPrefix;  // index: cell
+        private final int[] prefix;        // cells filled by shards
+        private final int[] position;      // index: cell, value: in prefix
+        private int prefixLength;
+        private int firstGroupLength;      // empty cells of the first group
+        private boolean relabeled;
+
+        public Enumeration(int[] puzzle) {
+            this.puzzle = puzzle;
+            this.fresh = new boolean[size];
+            Arrays.fill(fresh, true);
+            for (int symbol : puzzle)
+                if (symbol >= 0)
+                    fresh[symbol] = false;
+            int n = 0;
+            for (int i = 0; i < size; ++i)
+                if (fresh[i])
+                    ++n;
+            this.freshSymbols = new int[n];
+            n = 0;
+            for (int i = 0; i < size; ++i)
+                if (fresh[i])
+                    freshSymbols[n++] = i;
+            this.inPrefix = new boolean[totalCells];
+            this.prefix = new int[totalCells];
+            this.position = new int[totalCells];
+        }
+
+        public BigInteger count() throws InterruptedException {
+            List<int[]> shards = makeShards();
+            if (shards == null)
+                return BigInteger.ONE;
+            Map<String, Integer> indexes = new HashMap<String, Integer>();
+            for (int i = 0; i < shards.size(); ++i)
+                indexes.put(toKey(shards.get(i)), i);
+
+            // Count one representative per orbit
+            List<int[]> symmetries = findSymmetries();
+            List<int[]> representatives = new ArrayList<int[]>();
+            List<Integer> orbitSizes = new ArrayList<Integer>();
+            boolean[] visited = new boolean[shards.size()];
+            LinkedList<int[]> queue = new LinkedList<int[]>();
+            for (int i = 0; i < shards.size(); ++i) {
+                if (visited[i])
+                    continue;
+                visited[i] = true;
+                int orbitSize = 1;
+                queue.add(shards.get(i));
+                while (!queue.isEmpty()) {
+                    int[] shard = queue.removeFirst();
+                    for (int[] symmetry : symmetries) {
+                        Integer j = indexes.get(toKey(apply(symmetry, shard)));
+                        if (j != null && !visited[j]) {
+                            visited[j] = true;
+                            ++orbitSize;
+                            queue.add(shards.get(j));
+                        }
+                    }
+                }
+                representatives.add(shards.get(i));
+                orbitSizes.add(orbitSize);
+            }
+
+            BigInteger total = countInParallel(representatives, orbitSizes);
+            return relabeled ? total.multiply(factorial(freshSymbols.length))
+                             : total;
+        }
+
+        /**
+         * Fills the empty cells of cell groups, one group at a time, until
+         * there are enough shards for the threads. Returns {@code null} if the
+         * puzzle has no empty cell.
+         */
+        private List<int[]> makeShards() {
+            int group = mostEmptyGroup();
+            if (group < 0)
+                return null;
+            List<int[]> shards = new ArrayList<int[]>();
+            shards.add(new int[0]);
+            int target = Math.min(MAX_SHARDS, parallelism * SHARDS_PER_THREAD);
+            boolean first = true;
+            while (group >= 0 && shards.size() < target) {
+                int[] cells = newEmptyCells(group);
+                List<int[]> next = expand(shards, cells, first);
+                if (next == null)
+                    break;
+                for (int cell : cells) {
+                    inPrefix[cell] = true;
+                    position[cell] = prefixLength;
+                    prefix[prefixLength++] = cell;
+                }
+                if (first) {
+                    firstGroupLength = cells.length;
+                    relabeled = true;
+                    first = false;
+                }
+                shards = next;
+                group = mostFilledGroup();
+            }
+            return shards;
+        }
+
+        private int mostEmptyGroup() {
+            int best = -1;
+            int bestCount = 0;
+            for (int g = 0, n = structure.getNumCellGroups(); g < n; ++g) {
+                int count = 0;
+                for (int cell : structure.getCellGroup(g))
+                    if (puzzle[cell] < 0)
+                        ++count;
+                if (count > bestCount) {
+                    best = g;
+                    bestCount = count;
+                }
+            }
+            return best;
+        }
+
+        private int mostFilledGroup() {
+            int best = -1;
+            int bestCount = -1;
+            for (int g = 0, n = structure.getNumCellGroups(); g < n; ++g) {
+                int filled = 0;
+                int empty = 0;
+                for (int cell : structure.getCellGroup(g))
+                    if (puzzle[cell] >= 0 || inPrefix[cell])
+                        ++filled;
+                    else
+                        ++empty;
+                if (empty > 0 && filled > bestCount) {
+                    best = g;
+                    bestCount = filled;
+                }
+            }
+            return best;
+        }
+
+        private int[] newEmptyCells(int group) {
+            int[] cellGroup = structure.getCellGroup(group);
+            int[] cells = new int[cellGroup.length];
+            int n = 0;
+            for (int cell : cellGroup)
+                if (puzzle[cell] < 0 && !inPrefix[cell])
+                    cells[n++] = cell;
+            return Arrays.copyOf(cells, n);
+        }
+
+        /**
+         * Extends every shard with all valid fillings of the specified cells.
+         * Returns {@code null} if there would be too many shards.
+         */
+        private List<int[]> expand(
+                List<int[]> shards, int[] cells, boolean canonical) {
+            List<int[]> result = new ArrayList<int[]>();
+            int[] grid = puzzle.clone();
+            int[] values = new int[prefixLength + cells.length];
+            for (int[] shard : shards) {
+                for (int i = 0; i < prefixLength; ++i) {
+                    grid[prefix[i]] = shard[i];
+                    values[i] = shard[i];
+                }
+                if (!fill(grid, values, cells, 0, canonical ? 0 : -1, result))
+                    return null;
+            }
+            return result;
+        }
+
+        /*
+         * If nextFresh is not negative, fresh symbols are only allowed in
+         * ascending order; nextFresh is the index of the next fresh symbol.
+         */
+        private boolean fill(int[] grid, int[] values, int[] cells, int k,
+                             int nextFresh, List<int[]> result) {
+            if (k == cells.length) {
+                if (result.size() == MAX_SHARDS)
+                    return false;
+                result.add(values.clone());
+                return true;
+            }
+            int cell = cells[k];
+            for (int symbol = 0; symbol < size; ++symbol) {
+                boolean isFresh = nextFresh >= 0 && fresh[symbol];
+                if (isFresh && (nextFresh == freshSymbols.length
+                         || freshSymbols[nextFresh] != symbol))
+                    continue;
+                if (conflicts(grid, cell, symbol))
+                    continue;
+                grid[cell] = symbol;
+                values[prefixLength + k] = symbol;
+                boolean ok = fill(grid, values, cells, k + 1,
+                        isFresh ? nextFresh + 1 : nextFresh, result);
+                grid[cell] = -1;
+                if (!ok)
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns cell permutations, which map every cell group to a cell
+         * group, and every given and prefix cell to a cell of the same kind.
+         * Only rotations, reflections and swaps of rows, columns, bands and
+         * stacks of square grids are tried.
+         */
+        private List<int[]> findSymmetries() {
+            List<int[]> symmetries = new ArrayList<int[]>();
+            if (prefixLength == 0 || !StructureSymmetries.isSquare(structure)
+                     || totalCells > MAX_SYMMETRY_CELLS)
+                return symmetries;
+            int[] colors = new int[totalCells];
+            for (int i = 0; i < totalCells; ++i)
+                colors[i] = puzzle[i] >= 0 ? puzzle[i] : inPrefix[i] ? -2 : -1;
+            Set<String> keys = StructureSymmetries.makeCellGroupKeys(structure);
+            List<int[]> candidates = new ArrayList<int[]>();
+            candidates.addAll(StructureSymmetries.makeDihedralPermutations(size));
+            candidates.addAll(StructureSymmetries.makeSwapPermutations(size));
+            for (int[] p : candidates)
+                if (preservesColors(p, colors)
+                         && StructureSymmetries.mapsCellGroups(structure, keys, p))
+                    symmetries.add(p);
+            return symmetries;
+        }
+
+        private boolean preservesColors(int[] perm, int[] colors) {
+            for (int i = 0; i < totalCells; ++i)
+                if (colors[perm[i]] != colors[i])
+                    return false;
+            return true;
+        }
+
+        /**
+         * Maps the shard by the symmetry and relabels its fresh symbols back
+         * into ascending order.
+         */
+        private int[] apply(int[] symmetry, int[] shard) {
+            int[] image = new int[prefixLength];
+            for (int i = 0; i < prefixLength; ++i)
+                image[position[symmetry[prefix[i]]]] = shard[i];
+            int[] relabel = new int[size];
+            Arrays.fill(relabel, -1);
+            int next = 0;
+            for (int i = 0; i < firstGroupLength; ++i)
+                if (fresh[image[i]] && relabel[image[i]] < 0)
+                    relabel[image[i]] = freshSymbols[next++];
+            for (int i = 0; i < prefixLength; ++i)
+                if (fresh[image[i]])
+                    image[i] = relabel[image[i]];
+            return image;
+        }
+
+        private String toKey(int[] shard) {
+            char[] key = new char[shard.length];
+            for (int i = 0; i < shard.length; ++i)
+                key[i] = (char) shard[i];
+            return String.valueOf(key);
+        }
+
+        private BigInteger countInParallel(
+                final List<int[]> shards, final List<Integer> multiplicities)
+                throws InterruptedException {
+            final AtomicInteger nextShard = new AtomicInteger();
+            int threads = Math.min(parallelism, shards.size());
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<BigInteger>> futures =
+                        new ArrayList<Future<BigInteger>>();
+                for (int t = 0; t < threads; ++t) {
+                    futures.add(executor.submit(new Callable<BigInteger>() {
+                        @Override
+                        public BigInteger call() {
+                            SudokuSolver solver = new SudokuSolver(structure);
+                            int[] grid = puzzle.clone();
+                            BigInteger sum = BigInteger.ZERO;
+                            int i;
+                            while ((i = nextShard.getAndIncrement())
+                                     < shards.size()) {
+                                int[] shard = shards.get(i);
+                                for (int j = 0; j < prefixLength; ++j)
+                                    grid[prefix[j]] = shard[j];
+                                if (!solver.setPuzzle(grid))
+                                    continue;
+                                long n = solver.countSolutions(Long.MAX_VALUE);
+                                sum = sum.add(BigInteger.valueOf(n).multiply(
+                                        BigInteger.valueOf(multiplicities.get(i))));
+                            }
+                            return sum;
+                        }
+                    }));
+                }
+                BigInteger total = BigInteger.ZERO;
+                for (Future<BigInteger> future : futures)
+                    total = total.add(future.get());
+                return total;
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package net.lemonfactory.sudokusolver;
+
+import net.lemonfactory.sudokusolver.type.SudokuType;
+
+/**
+ * Conversions between puzzle strings, symbol indexes and bytes, and the
+ * fingerprint of a grid, shared by the cache, the store and the
+ * deduplicator so that they agree on one representation. In an array of
+ * symbol indexes, -1 marks a blank cell.
+ *
+ * @author Choongmin Lee
+ */
+final class SudokuGrids {
+
+    /** The maximum size of types whose grids can be kept as bytes. */
+    static final int MAX_BYTE_SIZE = 255;
+
+    /**
+     * Utility class.
+     */
+    private SudokuGrids() {}
+
+    /**
+     * Throws {@code IllegalArgumentException} if the symbol indexes of the
+     * specified type do not fit in a byte; byte {@code 0xFF} marks a blank
+     * cell.
+     */
+    static void checkByteSize(SudokuType type) {
+        int size = type.getStructure().size();
+        if (size > MAX_BYTE_SIZE)
+            throw new IllegalArgumentException(
+                    "size > " + MAX_BYTE_SIZE + ": " + size);
+    }
+
+    static int[] toArray(SudokuType type, String s) {
+        int[] a = new int[s.length()];
+        for (int i = 0; i < a.length; ++i) {
+            char c = s.charAt(i);
+            a[i] = c == type.getBlank() ? -1 : type.getSymbols().indexOf(c);
+        }
+        return a;
+    }
+
+    static String toString(SudokuType type, int[] a) {
+        char[] s = new char[a.length];
+        for (int i = 0; i < a.length; ++i)
+            s[i] = a[i] < 0 ? type.getBlank() : type.getSymbols().get(a[i]);
+        return String.valueOf(s);
+    }
+
+    static SudokuCanonicalizer.Form canonicalize(
+            SudokuType type, String puzzle) {
+        return SudokuCanonicalizer.getInstance(type.getStructure())
+                .canonicalize(toArray(type, puzzle));
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash of the symbol indexes, seeded with the
+     * hash code of the structure and followed by a final mix.
+     */
+    static long fingerprint(long structureHash, int[] grid) {
+        long h = 0xCBF29CE484222325L ^ structureHash;
+        for (int symbol : grid) {
+            h ^= symbol + 1;
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static byte toByte(int symbol) {
+        return (byte) symbol;
+    }
+
+    static int fromByte(byte b) {
+        return b == -1 ? -1 : b & 0xFF;
+    }
+
+    static byte[] toBytes(int[] a) {
+        byte[] b = new byte[a.length];
+        for (int i = 0; i < a.length; ++i)
+            b[i] = toByte(a[i]);
+        return b;
+    }
+
+    static int[] fromBytes(byte[] b) {
+        int[] a = new int[b.length];
+        for (int i = 0; i < b.length; ++i)
+            a[i] = fromByte(b[i]);
+        return a;
+    }
+}
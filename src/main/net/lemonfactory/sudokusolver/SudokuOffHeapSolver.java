@@ -0,0 +1,451 @@
+package net.lemonfactory.sudokusolver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.lemonfactory.sudokusolver.type.SudokuTypeStructure;
+
+/**
+ * <p>
+ * Solver whose search state lives outside the Java heap, for services that
+ * run a large number of solves of big structures, such as 25×25 ones, at
+ * the same time. The grid, the candidate counts, the candidates, the trail
+ * of changes, the propagation queue and the choice stack of a solve are all
+ * kept in one direct {@link ByteBuffer}, an arena, which is taken from a
+ * pool when the solve starts and returned to it when the solve ends, whether
+ * normally or not. The heap only holds the pooled arena objects, so the work
+ * of the garbage collector does not grow with the number of solves in
+ * flight.
+ * </p>
+ * <p>
+ * The pool keeps as many idle arenas as it is told to at construction, and
+ * should be sized for the number of solves expected to run at the same
+ * time; then arenas are only allocated while the load grows, and at most
+ * {@code maxIdleArenas} arenas of {@link #getArenaSize()} bytes each are
+ * kept for the life of the solver. A solve that finds the pool empty
+ * allocates a new arena, and an arena released to a full pool is dropped.
+ * The memory of a dropped arena is freed only when the garbage collector
+ * reclaims it, and allocating beyond the limit of direct memory forces a
+ * collection, so a pool smaller than the load brings back the coupling
+ * with the garbage collector that this class is meant to avoid.
+ * </p>
+ * <p>
+ * The search assigns naked and hidden singles and then guesses on a cell
+ * with the fewest candidates. Every change is pushed onto the trail, and
+ * backtracking pops the trail back to the mark of the choice, so no state is
+ * copied per guess. The size of an arena is fixed by the structure (see
+ * {@link #getArenaSize()}).
+ * </p>
+ * <p>
+ * This class is thread-safe; each solve uses its own arena.
+ * </p>
+ *
+ * @author Choongmin Lee
+ * @see SudokuSolver
+ */
+public final class SudokuOffHeapSolver {
+
+    private final SolverPlan plan;
+    private final int size;
+    private final int totalCells;
+    private final int words;       // number of candidate words per cell
+    private final long lastWordMask;
+
+    /* Byte offsets of the regions of an arena. */
+    private final int candidatesOffset;
+    private final int gridOffset;
+    private final int countsOffset;
+    private final int trailOffset;
+    private final int queueOffset;
+    private final int choicesOffset;
+    private final int arenaSize;
+
+    private final int maxIdleArenas;
+    private final ConcurrentLinkedQueue<Arena> idleArenas;
+    private final AtomicInteger numIdleArenas;
+
+    /**
+     * Creates a solver for the specified structure, which keeps up to the
+     * specified number of idle arenas for later solves. It should be the
+     * number of solves expected to run at the same time (see the class
+     * description).
+     *
+     * @param structure structure of puzzles to be solved
+     * @param maxIdleArenas the maximum number of idle arenas kept
+     */
+    public SudokuOffHeapSolver(SudokuTypeStructure structure,
+                               int maxIdleArenas) {
+        if (maxIdleArenas < 0)
+            throw new IllegalArgumentException(
+                    "maxIdleArenas < 0: " + maxIdleArenas);
+        plan = SolverPlan.getInstance(structure);
+        size = plan.size;
+        totalCells = plan.totalCells;
+        words = (size + 63) >>> 6;
+        lastWordMask = -1L >>> (-size & 63);
+
+        /* Each candidate is deleted at most once on a path, and each cell is
+           assigned at most once. */
+        int maxTrail = totalCells * (size + 1);
+        candidatesOffset = 0;
+        gridOffset = candidatesOffset + 8 * totalCells * words;
+        countsOffset = gridOffset + 4 * totalCells;
+        trailOffset = countsOffset + 4 * totalCells;
+        queueOffset = trailOffset + 4 * maxTrail;
+        choicesOffset = queueOffset + 4 * totalCells;
+        arenaSize = choicesOffset + 4 * 3 * (totalCells + 1);
+
+        this.maxIdleArenas = maxIdleArenas;
+        idleArenas = new ConcurrentLinkedQueue<Arena>();
+        numIdleArenas = new AtomicInteger();
+    }
+
+    /**
+     * Returns the number of bytes of the arena of one solve.
+     *
+     * @return the number of bytes of an arena
+     */
+    public int getArenaSize() {
+        return arenaSize;
+    }
+
+    /**
+     * Returns the number of idle arenas in the pool.
+     *
+     * @return the number of idle arenas
+     */
+    public int getNumIdleArenas() {
+        return numIdleArenas.get();
+    }
+
+    /**
+     * Drops all idle arenas, so their memory can be reclaimed.
+     */
+    public void clear() {
+        while (idleArenas.poll() != null)
+            numIdleArenas.decrementAndGet();
+    }
+
+    /**
+     * Solves the specified puzzle, given as symbol indexes with -1 for a
+     * blank cell, and writes the first solution found into
+     * {@code solution}. The content of {@code solution} is undefined if
+     * there is no solution. A puzzle with a symbol out of range has no
+     * solution.
+     *
+     * @param puzzle puzzle to be solved
+     * @param solution array into which the solution is written
+     * @return {@code true} if a solution is found
+     */
+    public boolean solve(int[] puzzle, int[] solution) {
+        checkLength("solution", solution);
+        return run(puzzle, 1, solution) > 0;
+    }
+
+    /**
+     * Counts the solutions of the specified puzzle, up to the specified
+     * limit.
+     *
+     * @param puzzle puzzle whose solutions to be counted
+     * @param limit the maximum number of solutions to be counted
+     * @return the number of solutions, or {@code limit} if there are more
+     */
+    public int countSolutions(int[] puzzle, int limit) {
+        if (limit < 1)
+            throw new IllegalArgumentException("limit < 1: " + limit);
+        return run(puzzle, limit, null);
+    }
+
+    private int run(int[] puzzle, int limit, int[] solution) {
+        checkLength("puzzle", puzzle);
+        Arena arena = idleArenas.poll();
+        if (arena != null)
+            numIdleArenas.decrementAndGet();
+        else
+            arena = new Arena();
+        try {
+            return arena.search(puzzle, limit, solution);
+        } finally {
+            if (numIdleArenas.incrementAndGet() <= maxIdleArenas)
+                idleArenas.offer(arena);
+            else
+                numIdleArenas.decrementAndGet();
+        }
+    }
+
+    private void checkLength(String name, int[] grid) {
+        if (grid.length != totalCells)
+            throw new IllegalArgumentException(
+                    name + ".length != totalCells: " + grid.length
+                     + " != " + totalCells);
+    }
+
+    /**
+     * Search state of one solve. All fields but the buffer are indexes into
+     * the regions of the buffer.
+     */
+    private final class Arena {
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(arenaSize)
+                .order(ByteOrder.nativeOrder());
+        private int trailSize;
+        private int queueHead;
+        private int queueTail;
+        private int depth;
+
+        int search(int[] puzzle, int limit, int[] solution) {
+            reset();
+            for (int i = 0; i < totalCells; ++i) {
+                int symbol = puzzle[i];
+                if (symbol < -1 || symbol >= size
+                        || (symbol >= 0 && !assign(i, symbol)))
+                    return 0;
+            }
+            if (!propagate())
+                return 0;
+            int found = 0;
+            depth = 0;
+            for (;;) {
+                int cell = chooseCell();
+                if (cell < 0) {
+                    if (found == 0 && solution != null)
+                        for (int i = 0; i < totalCells; ++i)
+                            solution[i] = getGrid(i);
+                    if (++found >= limit)
+                        return found;
+                } else {
+                    setChoice(depth, 0, cell);
+                    setChoice(depth, 1, trailSize);
+                    setChoice(depth, 2, 0);
+                    ++depth;
+                }
+                if (!advance())
+                    return found;
+            }
+        }
+
+        /**
+         * Undoes the last choice and tries its next candidate, popping
+         * exhausted choices. Returns {@code false} if there is none left.
+         */
+        private boolean advance() {
+            while (depth > 0) {
+                int d = depth - 1;
+                int cell = getChoice(d, 0);
+                undo(getChoice(d, 1));
+                int symbol = nextCandidate(cell, getChoice(d, 2));
+                if (symbol < 0) {
+                    --depth;
+                    continue;
+                }
+                setChoice(d, 2, symbol + 1);
+                queueHead = queueTail = 0;
+                if (assign(cell, symbol) && propagate())
+                    return true;
+            }
+            return false;
+        }
+
+        private void reset() {
+            trailSize = 0;
+            queueHead = queueTail = 0;
+            for (int i = 0; i < totalCells; ++i) {
+                for (int w = 0; w < words; ++w)
+                    setWord(i, w, w == words - 1 ? lastWordMask : -1L);
+                buffer.putInt(gridOffset + 4 * i, -1);
+                buffer.putInt(countsOffset + 4 * i, size);
+            }
+        }
+
+        private boolean assign(int cell, int symbol) {
+            int current = getGrid(cell);
+            if (current >= 0)
+                return current == symbol;
+            if (!has(cell, symbol))
+                return false;
+            buffer.putInt(gridOffset + 4 * cell, symbol);
+            push(-cell - 1);
+            for (int w = 0; w < words; ++w) {
+                long word = getWord(cell, w);
+                while (word != 0) {
+                    int s = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (s != symbol)
+                        delete(cell, s);
+                }
+            }
+            buffer.putInt(queueOffset + 4 * queueTail++, cell);
+            return true;
+        }
+
+        /**
+         * Deletes the candidate from the cell, assigning the last remaining
+         * one. Returns {@code false} if the cell has no candidates left.
+         */
+        private boolean delete(int cell, int symbol) {
+            int w = symbol >>> 6;
+            long bit = 1L << symbol;
+            long word = getWord(cell, w);
+            if ((word & bit) == 0)
+                return true;
+            setWord(cell, w, word & ~bit);
+            push(cell * size + symbol);
+            int count = buffer.getInt(countsOffset + 4 * cell) - 1;
+            buffer.putInt(countsOffset + 4 * cell, count);
+            if (count == 0)
+                return false;
+            if (count == 1 && getGrid(cell) < 0)
+                return assign(cell, nextCandidate(cell, 0));
+            return true;
+        }
+
+        /**
+         * Eliminates assigned symbols from neighbors and assigns hidden
+         * singles until nothing changes.
+         */
+        private boolean propagate() {
+            int[] neighborStart = plan.neighborStart;
+            int[] neighbors = plan.neighbors;
+            do {
+                while (queueHead < queueTail) {
+                    int cell = buffer.getInt(queueOffset + 4 * queueHead++);
+                    int symbol = getGrid(cell);
+                    for (int k = neighborStart[cell];
+                            k < neighborStart[cell + 1]; ++k)
+                        if (!delete(neighbors[k], symbol))
+                            return false;
+                }
+                if (!assignHiddenSingles())
+                    return false;
+            } while (queueHead < queueTail);
+            queueHead = queueTail = 0;
+            return true;
+        }
+
+        /**
+         * Assigns the symbols which only one cell of a full cell group can
+         * have, word by word. Returns {@code false} if a symbol has no place
+         * in such a group.
+         */
+        private boolean assignHiddenSingles() {
+            int[] groupStart = plan.groupStart;
+            int[] groupCells = plan.groupCells;
+            for (int g = 0; g < plan.numCellGroups; ++g) {
+                int start = groupStart[g];
+                int end = groupStart[g + 1];
+                if (end - start != size)
+                    continue;
+                for (int w = 0; w < words; ++w) {
+                    long once = 0;
+                    long twice = 0;
+                    long solved = 0;
+                    for (int m = start; m < end; ++m) {
+                        int cell = groupCells[m];
+                        int symbol = getGrid(cell);
+                        if (symbol >= 0) {
+                            if (symbol >>> 6 == w)
+                                solved |= 1L << symbol;
+                            continue;
+                        }
+                        long word = getWord(cell, w);
+                        twice |= once & word;
+                        once |= word;
+                    }
+                    long full = w == words - 1 ? lastWordMask : -1L;
+                    if (((once | solved) & full) != full)
+                        return false;
+                    long singles = once & ~twice & ~solved;
+                    while (singles != 0) {
+                        int symbol = (w << 6) + Long.numberOfTrailingZeros(singles);
+                        singles &= singles - 1;
+                        for (int m = start; m < end; ++m) {
+                            int cell = groupCells[m];
+                            if (getGrid(cell) < 0 && has(cell, symbol)) {
+                                if (!assign(cell, symbol))
+                                    return false;
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** Returns a blank cell with the fewest candidates, or -1. */
+        private int chooseCell() {
+            int best = -1;
+            int bestCount = Integer.MAX_VALUE;
+            for (int i = 0; i < totalCells; ++i) {
+                if (getGrid(i) >= 0)
+                    continue;
+                int count = buffer.getInt(countsOffset + 4 * i);
+                if (count < bestCount) {
+                    best = i;
+                    bestCount = count;
+                    if (count == 2)
+                        break;
+                }
+            }
+            return best;
+        }
+
+        private void undo(int mark) {
+            while (trailSize > mark) {
+                int entry = buffer.getInt(trailOffset + 4 * --trailSize);
+                if (entry < 0) {
+                    buffer.putInt(gridOffset + 4 * (-entry - 1), -1);
+                } else {
+                    int cell = entry / size;
+                    int symbol = entry % size;
+                    int w = symbol >>> 6;
+                    setWord(cell, w, getWord(cell, w) | (1L << symbol));
+                    int offset = countsOffset + 4 * cell;
+                    buffer.putInt(offset, buffer.getInt(offset) + 1);
+                }
+            }
+        }
+
+        /** Returns the first candidate of the cell from the symbol, or -1. */
+        private int nextCandidate(int cell, int from) {
+            for (int w = from >>> 6; w < words; ++w) {
+                long word = getWord(cell, w);
+                if (w == from >>> 6)
+                    word &= -1L << from;
+                if (word != 0)
+                    return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            return -1;
+        }
+
+        private boolean has(int cell, int symbol) {
+            return (getWord(cell, symbol >>> 6) & (1L << symbol)) != 0;
+        }
+
+        private void push(int entry) {
+            buffer.putInt(trailOffset + 4 * trailSize++, entry);
+        }
+
+        private int getGrid(int cell) {
+            return buffer.getInt(gridOffset + 4 * cell);
+        }
+
+        private long getWord(int cell, int w) {
+            return buffer.getLong(candidatesOffset + 8 * (cell * words + w));
+        }
+
+        private void setWord(int cell, int w, long word) {
+            buffer.putLong(candidatesOffset + 8 * (cell * words + w), word);
+        }
+
+        private int getChoice(int d, int field) {
+            return buffer.getInt(choicesOffset + 4 * (3 * d + field));
+        }
+
+        private void setChoice(int d, int field, int value) {
+            buffer.putInt(choicesOffset + 4 * (3 * d + field), value);
+        }
+    }
+}
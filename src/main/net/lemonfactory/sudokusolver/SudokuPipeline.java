@@ -0,0 +1,180 @@
+package net.lemonfactory.sudokusolver;
+
+import net.lemonfactory.sudokusolver.type.SudokuTypeStructure;
+
+/**
+ * <p>
+ * Two-tier solver for batches of puzzles. Each puzzle is first propagated by
+ * a light propagator which only assigns naked and hidden singles and
+ * allocates nothing. Most puzzles are solved, or found to have no solution,
+ * by it alone; only the others are escalated to a {@link SudokuSolver},
+ * starting from the cells the first tier assigned. The number of puzzles
+ * resolved by each tier is counted.
+ * </p>
+ * <p>
+ * The first tier only supports structures of size 64 or less; for larger
+ * structures every puzzle is escalated. Thread-safety is not guaranteed;
+ * use one pipeline per thread.
+ * </p>
+ *
+ * @author Choongmin Lee
+ * @see SudokuSolver
+ */
+public final class SudokuPipeline {
+
+    private final SudokuSolver solver;
+    private final SinglesPropagator singles;
+    private final int totalCells;
+
+    private long solvedBySingles;
+    private long rejectedBySingles;
+    private long solvedBySearch;
+    private long rejectedBySearch;
+
+    /**
+     * Creates a pipeline for the specified structure, whose first tier
+     * loops over the neighbor tables of the structure.
+     *
+     * @param structure structure of puzzles to be solved
+     */
+    public SudokuPipeline(SudokuTypeStructure structure) {
+        this(structure, false);
+    }
+
+    /**
+     * Creates a pipeline for the specified structure. If
+     * {@code specialized} is {@code true}, the first tier uses a kernel
+     * generated and compiled for the structure at runtime, with its
+     * neighbor tables unrolled into constants; the kernel is shared by all
+     * pipelines of equal structures. If the kernel cannot be compiled, for
+     * example because no Java compiler is available, the generic kernel is
+     * used.
+     *
+     * @param structure structure of puzzles to be solved
+     * @param specialized whether to use a kernel specialized for the
+     *     structure
+     * @see net.lemonfactory.sudokusolver.internal.PropagationKernels
+     */
+    public SudokuPipeline(SudokuTypeStructure structure, boolean specialized) {
+        solver = new SudokuSolver(structure);
+        SolverPlan plan = solver.getPlan();
+        if (plan.size <= 64)
+            singles = new SinglesPropagator(plan, specialized
+                    ? plan.getSpecializedKernel() : plan.genericKernel);
+        else
+            singles = null;
+        totalCells = plan.totalCells;
+    }
+
+    /**
+     * Solves the specified puzzle, given as symbol indexes with -1 for a
+     * blank cell, and writes the solution into the specified array. Returns
+     * {@code false} if the puzzle has no solution, or if it is not valid; the
+     * content of {@code solution} is undefined then.
+     *
+     * @param puzzle symbol indexes of the puzzle
+     * @param solution array into which the solution is written; it may be
+     *     {@code puzzle} itself
+     * @return {@code true} if the puzzle is solved
+     * @throws IllegalArgumentException if the length of either array is not
+     *     the number of cells of the structure
+     */
+    public boolean solve(int[] puzzle, int[] solution) {
+        if (puzzle.length != totalCells)
+            throw new IllegalArgumentException(
+                    "puzzle.length != totalCells: " + puzzle.length
+                     + " != " + totalCells);
+        if (solution.length != totalCells)
+            throw new IllegalArgumentException(
+                    "solution.length != totalCells: " + solution.length
+                     + " != " + totalCells);
+        int[] start = puzzle;
+        if (singles != null) {
+            switch (singles.propagate(puzzle)) {
+            case SinglesPropagator.CONTRADICTION:
+                ++rejectedBySingles;
+                return false;
+            case SinglesPropagator.SOLVED:
+                ++solvedBySingles;
+                System.arraycopy(singles.getGrid(), 0, solution, 0, totalCells);
+                return true;
+            default:
+                start = singles.getGrid();
+            }
+        }
+        if (solver.setPuzzle(start) && solver.solvePuzzle()) {
+            ++solvedBySearch;
+            solver.getSolution(solution);
+            return true;
+        }
+        ++rejectedBySearch;
+        return false;
+    }
+
+    /**
+     * Returns the solver of the second tier, which holds the state of the
+     * last escalated puzzle.
+     *
+     * @return the solver of the second tier
+     */
+    public SudokuSolver getSolver() {
+        return solver;
+    }
+
+    /**
+     * Returns the number of puzzles solved by the first tier.
+     *
+     * @return the number of puzzles solved by the first tier
+     */
+    public long getSolvedBySingles() {
+        return solvedBySingles;
+    }
+
+    /**
+     * Returns the number of puzzles found to have no solution by the first
+     * tier, including the puzzles that are not valid.
+     *
+     * @return the number of puzzles rejected by the first tier
+     */
+    public long getRejectedBySingles() {
+        return rejectedBySingles;
+    }
+
+    /**
+     * Returns the number of puzzles solved by the second tier.
+     *
+     * @return the number of puzzles solved by the second tier
+     */
+    public long getSolvedBySearch() {
+        return solvedBySearch;
+    }
+
+    /**
+     * Returns the number of puzzles found to have no solution by the second
+     * tier.
+     *
+     * @return the number of puzzles rejected by the second tier
+     */
+    public long getRejectedBySearch() {
+        return rejectedBySearch;
+    }
+
+    /**
+     * Returns the number of puzzles escalated to the second tier.
+     *
+     * @return the number of puzzles escalated to the second tier
+     */
+    public long getEscalated() {
+        return solvedBySearch + rejectedBySearch;
+    }
+
+    /**
+     * Resets all statistics to zero.
+     */
+    public void resetStatistics() {
+        solvedBySingles = 0;
+        rejectedBySingles = 0;
+        solvedBySearch = 0;
+        rejectedBySearch = 0;
+    }
+}
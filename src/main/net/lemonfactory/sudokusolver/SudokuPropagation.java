@@ -0,0 +1,99 @@
+package net.lemonfactory.sudokusolver;
+
+/**
+ * <p>
+ * Result of {@link SudokuSolver#propagate()}: the candidates of all cells
+ * after logical propagation, and whether a contradiction or a solution was
+ * reached. The only candidate of a cell whose value was assigned, either as
+ * a clue or by propagation, is its value.
+ * </p>
+ * <p>
+ * Candidates are held as bit masks, one or more {@code long} words per cell.
+ * This class is immutable.
+ * </p>
+ *
+ * @author Choongmin Lee
+ * @see SudokuSolver#propagate()
+ */
+public final class SudokuPropagation {
+
+    private final int size;
+    private final int wordsPerCell;
+    private final long[] masks;
+    private final boolean contradiction;
+    private final boolean solved;
+
+    SudokuPropagation(
+            int size, long[] masks, boolean contradiction, boolean solved) {
+        this.size = size;
+        this.wordsPerCell = (size + 63) >>> 6;
+        this.masks = masks;
+        this.contradiction = contradiction;
+        this.solved = solved;
+    }
+
+    /**
+     * Returns {@code true} if propagation reached a contradiction, which means
+     * the puzzle has no solution. The candidates are the ones when the
+     * contradiction was found.
+     *
+     * @return {@code true} if propagation reached a contradiction
+     */
+    public boolean isContradiction() {
+        return contradiction;
+    }
+
+    /**
+     * Returns {@code true} if propagation assigned all cells without a
+     * contradiction, which means the puzzle has only one solution.
+     *
+     * @return {@code true} if propagation solved the puzzle
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /**
+     * Returns {@code true} if the specified symbol is a candidate of the
+     * specified cell.
+     *
+     * @param cell index of the cell
+     * @param symbol symbol index
+     * @return {@code true} if the symbol is a candidate of the cell
+     */
+    public boolean hasCandidate(int cell, int symbol) {
+        if (symbol < 0 || symbol >= size)
+            throw new IllegalArgumentException(
+                    "symbol out of range: " + symbol);
+        return (masks[cell * wordsPerCell + (symbol >>> 6)]
+                & (1L << symbol)) != 0;
+    }
+
+    /**
+     * Returns the number of candidates of the specified cell.
+     *
+     * @param cell index of the cell
+     * @return the number of candidates of the cell
+     */
+    public int getNumCandidates(int cell) {
+        int count = 0;
+        for (int k = cell * wordsPerCell, end = k + wordsPerCell; k < end; ++k)
+            count += Long.bitCount(masks[k]);
+        return count;
+    }
+
+    /**
+     * Returns the candidates of the specified cell as a bit mask, where bit
+     * {@code s} is set if symbol {@code s} is a candidate. It is only
+     * supported by structures of size 64 or less.
+     *
+     * @param cell index of the cell
+     * @return the candidates of the cell as a bit mask
+     * @throws IllegalStateException if the size is greater than 64
+     */
+    public long getCandidateMask(int cell) {
+        if (wordsPerCell != 1)
+            throw new IllegalStateException("size > 64: " + size);
+        return masks[cell];
+    }
+}
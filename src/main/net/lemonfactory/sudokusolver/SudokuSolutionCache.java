@@ -0,0 +1,183 @@
+package net.lemonfactory.sudokusolver;
+
+import java.util.*;
+
+import net.lemonfactory.sudokusolver.type.*;
+
+/**
+ * <p>
+ * Size-bounded cache of solutions, to be placed in front of
+ * {@link SudokuSolver}. Puzzles are keyed by their structure and their
+ * canonical form (see {@link SudokuCanonicalizer}), so a puzzle is found in
+ * this cache even if it was stored in another orientation or with other
+ * symbols; the cached solution is mapped back to the orientation and the
+ * symbols of the caller. When the cache is full, the least recently used
+ * entry is evicted. Solutions are kept as one byte per cell, so types of
+ * size greater than {@link #MAX_SIZE} are rejected.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @author Choongmin Lee
+ */
+public final class SudokuSolutionCache {
+
+    /** The maximum size of types; byte {@code 0xFF} marks a blank cell. */
+    public static final int MAX_SIZE = SudokuGrids.MAX_BYTE_SIZE;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, byte[]> entries;
+
+    private long hits;
+    private long misses;
+
+    @SuppressWarnings("serial")
+    public SudokuSolutionCache(final int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity < 1: " + capacity);
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, byte[]> e) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Returns the cached solution of the specified puzzle, or {@code null} if
+     * the solution is not cached or the puzzle is not valid.
+     *
+     * @param type Sudoku type to be referenced to interpret symbols
+     * @param puzzle puzzle whose solution to be returned
+     * @return the cached solution of the puzzle, or {@code null} if it is not
+     *     cached
+     * @throws IllegalArgumentException if the size of the type is greater
+     *     than {@link #MAX_SIZE}
+     */
+    public String get(SudokuType type, String puzzle) {
+        SudokuGrids.checkByteSize(type);
+        if (!type.isValidPuzzle(puzzle))
+            return null;
+        SudokuCanonicalizer.Form form = SudokuGrids.canonicalize(type, puzzle);
+        int[] solution = get(type.getStructure(), form);
+        return solution == null
+                ? null : SudokuGrids.toString(type, form.toCaller(solution));
+    }
+
+    /**
+     * Caches the solution of the specified puzzle. Nothing is cached if the
+     * puzzle is not valid.
+     *
+     * @param type Sudoku type to be referenced to interpret symbols
+     * @param puzzle puzzle whose solution to be cached
+     * @param solution solution of the puzzle
+     * @throws IllegalArgumentException if the size of the type is greater
+     *     than {@link #MAX_SIZE}
+     */
+    public void put(SudokuType type, String puzzle, String solution) {
+        SudokuGrids.checkByteSize(type);
+        if (!type.isValidPuzzle(puzzle))
+            return;
+        SudokuCanonicalizer.Form form = SudokuGrids.canonicalize(type, puzzle);
+        put(type.getStructure(), form,
+            form.toCanonical(SudokuGrids.toArray(type, solution)));
+    }
+
+    /**
+     * Returns the solution of the specified puzzle from this cache, or solves
+     * the puzzle with the specified solver and caches the solution. Returns
+     * {@code null} if the puzzle is not valid or has no solution.
+     *
+     * @param solver solver to be used if the solution is not cached
+     * @param type Sudoku type to be referenced to interpret symbols
+     * @param puzzle puzzle to be solved
+     * @return the solution of the puzzle, or {@code null} if the puzzle is not
+     *     valid or has no solution
+     * @throws IllegalArgumentException if the size of the type is greater
+     *     than {@link #MAX_SIZE}
+     */
+    public String solve(SudokuSolver solver, SudokuType type, String puzzle) {
+        SudokuGrids.checkByteSize(type);
+        if (!type.isValidPuzzle(puzzle))
+            return null;
+        SudokuCanonicalizer.Form form = SudokuGrids.canonicalize(type, puzzle);
+        int[] solution = get(type.getStructure(), form);
+        if (solution != null)
+            return SudokuGrids.toString(type, form.toCaller(solution));
+        if (!solver.setPuzzle(type, puzzle) || !solver.solvePuzzle())
+            return null;
+        String s = solver.getSolution(type);
+        put(type.getStructure(), form,
+            form.toCanonical(SudokuGrids.toArray(type, s)));
+        return s;
+    }
+
+    private synchronized int[] get(
+            SudokuTypeStructure structure, SudokuCanonicalizer.Form form) {
+        byte[] solution = entries.get(new Key(structure, form));
+        if (solution == null) {
+            ++misses;
+            return null;
+        }
+        ++hits;
+        return SudokuGrids.fromBytes(solution);
+    }
+
+    private synchronized void put(SudokuTypeStructure structure,
+                                  SudokuCanonicalizer.Form form,
+                                  int[] solution) {
+        entries.put(new Key(structure, form), SudokuGrids.toBytes(solution));
+    }
+
+    private static final class Key {
+
+        private final SudokuTypeStructure structure;
+        private final byte[] puzzle;
+        private final long fingerprint;
+
+        public Key(SudokuTypeStructure structure, SudokuCanonicalizer.Form form) {
+            this.structure = structure;
+            this.puzzle = SudokuGrids.toBytes(form.getPuzzle());
+            this.fingerprint = form.getFingerprint();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return fingerprint == k.fingerprint
+                     && Arrays.equals(puzzle, k.puzzle)
+                     && structure.equals(k.structure);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (fingerprint ^ (fingerprint >>> 32));
+        }
+    }
+}
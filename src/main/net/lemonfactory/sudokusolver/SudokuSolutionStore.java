@@ -0,0 +1,454 @@
+package net.lemonfactory.sudokusolver;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import net.lemonfactory.sudokusolver.type.SudokuType;
+
+/**
+ * <p>
+ * Persistent store of solutions on the local disk. Puzzles are keyed by the
+ * fingerprint of their canonical form (see {@link SudokuCanonicalizer}), so
+ * an equivalent puzzle in another orientation or with other symbols is found
+ * as well.
+ * </p>
+ * <p>
+ * A store consists of two files. The data file ({@code name.dat}) is an
+ * append-only sequence of records, each of which holds the fingerprint, the
+ * canonical puzzle, its canonical solution, the solving time and the number of
+ * guesses. The index file ({@code name.idx}) is a memory-mapped open
+ * addressing hash table from fingerprints to offsets of records, which is
+ * grown by doubling when it gets half full. The index is only a cache of the
+ * data file; records appended after the last update of the index (after a
+ * crash, for example) are indexed again when the store is opened, and a
+ * partially written record at the end of the data file is discarded.
+ * Symbols are written as one byte per cell, so types of size greater than
+ * {@link #MAX_SIZE} are rejected.
+ * </p>
+ * <p>
+ * This class is thread-safe. A store must not be opened by more than one
+ * instance at the same time.
+ * </p>
+ *
+ * @author Choongmin Lee
+ * @see SudokuSolutionCache
+ */
+public final class SudokuSolutionStore implements Closeable {
+
+    /** The maximum size of types; byte {@code 0xFF} marks a blank cell. */
+    public static final int MAX_SIZE = SudokuGrids.MAX_BYTE_SIZE;
+
+    private static final int DATA_MAGIC = 0x53534442;   // "SSDB"
+    private static final int INDEX_MAGIC = 0x53534958;  // "SSIX"
+    private static final int VERSION = 1;
+
+    private static final int DATA_HEADER = 8;
+    private static final int INDEX_HEADER = 32;
+    private static final int SLOT = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 26;  // mapped as one buffer
+
+    /* Offsets in the header of the index */
+    private static final int CAPACITY = 8;
+    private static final int COUNT = 12;
+    private static final int DATA_LENGTH = 16;
+
+    private final RandomAccessFile dataFile;
+    private final RandomAccessFile indexFile;
+    private final FileChannel data;
+    private final FileChannel index;
+
+    private MappedByteBuffer slots;
+    private int capacity;
+    private int count;
+    private long dataLength;
+
+    private SudokuSolutionStore(File dataPath, File indexPath)
+            throws IOException {
+        dataFile = new RandomAccessFile(dataPath, "rw");
+        indexFile = new RandomAccessFile(indexPath, "rw");
+        data = dataFile.getChannel();
+        index = indexFile.getChannel();
+    }
+
+    /**
+     * Opens the store with the specified name, creating its files if they do
+     * not exist. The files are {@code name.dat} and {@code name.idx}.
+     *
+     * @param name path of the store without an extension
+     * @return the opened store
+     * @throws IOException if an I/O error occurs or the data file is not a
+     *     store
+     */
+    public static SudokuSolutionStore open(File name) throws IOException {
+        SudokuSolutionStore store = new SudokuSolutionStore(
+                new File(name.getPath() + ".dat"),
+                new File(name.getPath() + ".idx"));
+        try {
+            store.init();
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void init() throws IOException {
+        if (data.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(DATA_HEADER);
+            header.putInt(DATA_MAGIC).putInt(VERSION).flip();
+            writeFully(data, header, 0);
+        } else {
+            ByteBuffer header = readFully(data, 0, DATA_HEADER);
+            if (header.getInt() != DATA_MAGIC || header.getInt() != VERSION)
+                throw new IOException("not a solution store");
+        }
+        boolean valid = false;
+        if (index.size() >= INDEX_HEADER) {
+            ByteBuffer header = readFully(index, 0, INDEX_HEADER);
+            if (header.getInt() == INDEX_MAGIC && header.getInt() == VERSION) {
+                capacity = header.getInt();
+                count = header.getInt();
+                dataLength = header.getLong();
+                valid = capacity >= INITIAL_CAPACITY
+                         && capacity <= MAX_CAPACITY
+                         && Integer.bitCount(capacity) == 1
+                         && count >= 0 && count * 2 <= capacity
+                         && index.size() >= INDEX_HEADER + (long) capacity * SLOT
+                         && dataLength >= DATA_HEADER
+                         && dataLength <= data.size();
+            }
+        }
+        if (valid) {
+            slots = index.map(FileChannel.MapMode.READ_WRITE, 0,
+                    INDEX_HEADER + (long) capacity * SLOT);
+        } else {
+            capacity = INITIAL_CAPACITY;
+            count = 0;
+            dataLength = DATA_HEADER;
+            mapIndex();
+        }
+        recover();
+    }
+
+    /**
+     * Indexes the records after the indexed part of the data file, and
+     * discards a partially written record at the end.
+     */
+    private void recover() throws IOException {
+        long end = data.size();
+        while (dataLength < end) {
+            if (end - dataLength < 12)
+                break;
+            ByteBuffer head = readFully(data, dataLength, 12);
+            long fingerprint = head.getLong();
+            long length = recordLength(head.getInt());
+            if (length < 0 || dataLength + length > end)
+                break;
+            insert(fingerprint, dataLength);
+            dataLength += length;
+        }
+        if (dataLength < end)
+            data.truncate(dataLength);
+        writeHeader();
+    }
+
+    private static long recordLength(int cells) {
+        if (cells < 0)
+            return -1;
+        return 8 + 4 + 2L * cells + 8 + 4;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Returns {@code true} if this store has a record with the specified
+     * fingerprint. Unlike {@link #get(SudokuType, String)}, it only consults
+     * the index, and thus it is very fast.
+     *
+     * @param fingerprint fingerprint of a canonical form
+     * @return {@code true} if this store has a record with the fingerprint
+     * @see SudokuCanonicalizer.Form#getFingerprint()
+     */
+    public synchronized boolean contains(long fingerprint) {
+        for (int slot = firstSlot(fingerprint); ; slot = (slot + 1) & (capacity - 1)) {
+            long offset = slots.getLong(INDEX_HEADER + slot * SLOT + 8);
+            if (offset == 0)
+                return false;
+            if (slots.getLong(INDEX_HEADER + slot * SLOT) == fingerprint)
+                return true;
+        }
+    }
+
+    /**
+     * Returns the stored record of the specified puzzle, or {@code null} if
+     * there is no such record or the puzzle is not valid. The solution of the
+     * returned record is in the orientation and the symbols of the caller.
+     *
+     * @param type Sudoku type to be referenced to interpret symbols
+     * @param puzzle puzzle whose record to be returned
+     * @return the stored record of the puzzle or {@code null}
+     * @throws IllegalArgumentException if the size of the type is greater
+     *     than {@link #MAX_SIZE}
+     * @throws IOException if an I/O error occurs
+     */
+    public Record get(SudokuType type, String puzzle) throws IOException {
+        SudokuGrids.checkByteSize(type);
+        if (!type.isValidPuzzle(puzzle))
+            return null;
+        SudokuCanonicalizer.Form form = SudokuGrids.canonicalize(type, puzzle);
+        ByteBuffer record = find(form);
+        if (record == null)
+            return null;
+        int cells = puzzle.length();
+        int[] solution = new int[cells];
+        for (int i = 0; i < cells; ++i)
+            solution[i] = SudokuGrids.fromByte(record.get(12 + cells + i));
+        String s = SudokuGrids.toString(type, form.toCaller(solution));
+        record.position(12 + 2 * cells);
+        return new Record(s, record.getLong(), record.getInt());
+    }
+
+    /**
+     * Appends a record of the specified puzzle, unless there already is a
+     * record of an equivalent puzzle or the puzzle is not valid.
+     *
+     * @param type Sudoku type to be referenced to interpret symbols
+     * @param puzzle solved puzzle
+     * @param solution solution of the puzzle
+     * @param time time, in nanoseconds, spent for solving
+     * @param guesses number of guesses made for solving
+     * @return {@code true} if a record is appended
+     * @throws IllegalArgumentException if the size of the type is greater
+     *     than {@link #MAX_SIZE}
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean put(SudokuType type, String puzzle, String solution,
+                       long time, int guesses) throws IOException {
+        SudokuGrids.checkByteSize(type);
+        if (!type.isValidPuzzle(puzzle))
+            return false;
+        SudokuCanonicalizer.Form form = SudokuGrids.canonicalize(type, puzzle);
+        int[] canonicalSolution =
+                form.toCanonical(SudokuGrids.toArray(type, solution));
+        int cells = canonicalSolution.length;
+        ByteBuffer record = ByteBuffer.allocate((int) recordLength(cells));
+        record.putLong(form.getFingerprint()).putInt(cells);
+        for (int symbol : form.getPuzzle())
+            record.put(SudokuGrids.toByte(symbol));
+        for (int symbol : canonicalSolution)
+            record.put(SudokuGrids.toByte(symbol));
+        record.putLong(time).putInt(guesses).flip();
+        synchronized (this) {
+            if (find(form) != null)
+                return false;
+            if ((count + 1) * 2 > capacity && capacity == MAX_CAPACITY)
+                throw new IOException("index is full");
+            writeFully(data, record, dataLength);
+            insert(form.getFingerprint(), dataLength);
+            dataLength += record.capacity();
+            writeHeader();
+            return true;
+        }
+    }
+
+    /**
+     * Returns the solution of the specified puzzle from this store, or solves
+     * the puzzle with the specified solver and stores the solution. Returns
+     * {@code null} if the puzzle is not valid or has no solution.
+     *
+     * @param solver solver to be used if the solution is not stored
+     * @param type Sudoku type to be referenced to interpret symbols
+     * @param puzzle puzzle to be solved
+     * @return the solution of the puzzle, or {@code null} if the puzzle is not
+     *     valid or has no solution
+     * @throws IllegalArgumentException if the size of the type is greater
+     *     than {@link #MAX_SIZE}
+     * @throws IOException if an I/O error occurs
+     */
+    public String solve(SudokuSolver solver, SudokuType type, String puzzle)
+            throws IOException {
+        Record record = get(type, puzzle);
+        if (record != null)
+            return record.getSolution();
+        if (!solver.setPuzzle(type, puzzle) || !solver.solvePuzzle())
+            return null;
+        String solution = solver.getSolution(type);
+        put(type, puzzle, solution, solver.getTime(), solver.getGuesses());
+        return solution;
+    }
+
+    /**
+     * Writes all changes to the disk.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void flush() throws IOException {
+        data.force(false);
+        if (slots != null)
+            slots.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (slots != null)
+                flush();
+        } finally {
+            slots = null;
+            try {
+                dataFile.close();
+            } finally {
+                indexFile.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the record of the canonical form, or {@code null}.
+     */
+    private synchronized ByteBuffer find(SudokuCanonicalizer.Form form)
+            throws IOException {
+        long fingerprint = form.getFingerprint();
+        int[] puzzle = form.getPuzzle();
+        int length = (int) recordLength(puzzle.length);
+        for (int slot = firstSlot(fingerprint); ; slot = (slot + 1) & (capacity - 1)) {
+            long offset = slots.getLong(INDEX_HEADER + slot * SLOT + 8) - 1;
+            if (offset < 0)
+                return null;
+            if (slots.getLong(INDEX_HEADER + slot * SLOT) != fingerprint)
+                continue;
+            ByteBuffer record = readFully(data, offset, 12);
+            record.getLong();
+            if (record.getInt() != puzzle.length)
+                continue;
+            record = readFully(data, offset, length);
+            boolean same = true;
+            for (int i = 0; i < puzzle.length && same; ++i)
+                same = SudokuGrids.fromByte(record.get(12 + i)) == puzzle[i];
+            if (same)
+                return record;
+        }
+    }
+
+    private void insert(long fingerprint, long offset) throws IOException {
+        if ((count + 1) * 2 > capacity)
+            grow();
+        int slot = firstSlot(fingerprint);
+        while (slots.getLong(INDEX_HEADER + slot * SLOT + 8) != 0)
+            slot = (slot + 1) & (capacity - 1);
+        slots.putLong(INDEX_HEADER + slot * SLOT, fingerprint);
+        slots.putLong(INDEX_HEADER + slot * SLOT + 8, offset + 1);
+        ++count;
+    }
+
+    private void grow() throws IOException {
+        if (capacity == MAX_CAPACITY)
+            throw new IOException("index is full");
+        long[] fingerprints = new long[count];
+        long[] offsets = new long[count];
+        int n = 0;
+        for (int slot = 0; slot < capacity; ++slot) {
+            long offset = slots.getLong(INDEX_HEADER + slot * SLOT + 8);
+            if (offset != 0) {
+                fingerprints[n] = slots.getLong(INDEX_HEADER + slot * SLOT);
+                offsets[n++] = offset - 1;
+            }
+        }
+        capacity <<= 1;
+        count = 0;
+        mapIndex();
+        for (int i = 0; i < n; ++i)
+            insert(fingerprints[i], offsets[i]);
+    }
+
+    /**
+     * Maps a cleared index of the current capacity.
+     */
+    private void mapIndex() throws IOException {
+        long length = INDEX_HEADER + (long) capacity * SLOT;
+        if (indexFile.length() < length)
+            indexFile.setLength(length);
+        slots = index.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        for (int i = INDEX_HEADER; i < length; i += 8)
+            slots.putLong(i, 0);
+        slots.putInt(0, INDEX_MAGIC);
+        slots.putInt(4, VERSION);
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        slots.putInt(CAPACITY, capacity);
+        slots.putInt(COUNT, count);
+        slots.putLong(DATA_LENGTH, dataLength);
+    }
+
+    private int firstSlot(long fingerprint) {
+        long h = fingerprint * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (capacity - 1);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position,
+                                        int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException();
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer,
+                                   long position) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+    }
+
+    /**
+     * Stored solution with the statistics of its solving.
+     */
+    public static final class Record {
+
+        private final String solution;
+        private final long time;
+        private final int guesses;
+
+        private Record(String solution, long time, int guesses) {
+            this.solution = solution;
+            this.time = time;
+            this.guesses = guesses;
+        }
+
+        /**
+         * Returns the solution in the orientation and the symbols of the
+         * puzzle it was looked up with.
+         *
+         * @return the solution
+         */
+        public String getSolution() {
+            return solution;
+        }
+
+        /**
+         * Returns the time, in nanoseconds, spent for solving.
+         *
+         * @return the time, in nanoseconds, spent for solving
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Returns the number of guesses made for solving.
+         *
+         * @return the number of guesses made for solving
+         */
+        public int getGuesses() {
+            return guesses;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package net.lemonfactory.sudokusolver;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import net.lemonfactory.sudokusolver.internal.*;
 import net.lemonfactory.sudokusolver.type.*;
@@ -24,17 +27,36 @@ public final class SudokuSolver {
     private static final int CONTROL_VARS = 2;
     private static final int SAVE_POINT = 3;
 
-    private final SudokuTypeStructure structure;
+    private SudokuTypeStructure structure;
+    private SolverPlan plan;
 
     private final int size;        /* redundant for efficiency */
     private final int totalCells;  /* redundant for efficiency */
 
     private final int[] givenPuzzle;
     private final int[] grid;
-    private final SimpleSet[] candidates;
+    private final LongArraySimpleSet[] candidates;
     private final Technique[] techniques;
     private final OperationStack opStack;
     private final SimpleMinPriorityQueue cellIndexQueue;
+    private final int[] componentQueue;   /* for multi-grid structures */
+    private final boolean[] reached;
+
+    /* The bottom of the operation stack holds the clue layer: the clues
+       added by addClue, each starting with a save point, on top of the
+       givens assigned when the layer was built. clueLayerSize is the size of
+       the stack at the top of the layer, or -1 if the layer must be rebuilt
+       from the given puzzle. clueCells holds the cells of the added clues in
+       the order they are on the stack. */
+    private final int[] clueCells;
+    private int numClueCells;
+    private int clueLayerSize;
+
+    /* Engine used by solvePuzzle in place of the generic search for the
+       regular 9x9 structure, or null; solution is the grid holding the
+       last solution, which is either grid or the grid of the engine. */
+    private Box9Engine box9;
+    private int[] solution;
 
     private long initTime;
     private long elapsedTime;
@@ -42,28 +64,89 @@ public final class SudokuSolver {
 
     private volatile boolean aborted;
     private boolean assignPhase;
+    private boolean backjump;
 
     public SudokuSolver(SudokuTypeStructure structure) {
         this.structure = structure;
-        size = structure.size();
-        totalCells = size * size;
+        plan = SolverPlan.getInstance(structure);
+        size = plan.size;
+        totalCells = plan.totalCells;
         givenPuzzle = new int[totalCells];
+        Arrays.fill(givenPuzzle, -1);
         grid = new int[totalCells];
         Arrays.fill(grid, -1);
-        candidates = new SimpleSet[totalCells];
+        candidates = new LongArraySimpleSet[totalCells];
         for (int i = 0; i < totalCells; ++i)
-            candidates[i] = new BooleanArraySimpleSet(size);
+            candidates[i] = new LongArraySimpleSet(size);
         techniques = new Technique[] {
                 new NakedPair(),
                 new Interactions()};
         opStack = new OperationStack(2048);
         cellIndexQueue = new BinaryMinHeap(totalCells);
+        componentQueue = new int[totalCells];
+        reached = new boolean[totalCells];
+        clueCells = new int[totalCells];
+        clueLayerSize = -1;
+        box9 = Box9Engine.supports(structure) ? new Box9Engine() : null;
+        solution = grid;
     }
 
     public SudokuTypeStructure getStructure() {
         return structure;
     }
 
+    /**
+     * <p>
+     * Changes the structure of this solver to the specified one, which must
+     * have the same size and the same number of cells as the current
+     * structure. All buffers of this solver are reused. The given puzzle and
+     * the state of the previous solving are discarded, so a puzzle must be
+     * set again before solving.
+     * </p>
+     * <p>
+     * A solver borrowed from a {@link SudokuSolverPool} whose structure has
+     * been changed is discarded by the pool when released.
+     * </p>
+     *
+     * @param structure new structure of this solver
+     * @throws IllegalArgumentException if the size or the number of cells of
+     *     the structure is different
+     */
+    public void setStructure(SudokuTypeStructure structure) {
+        if (structure.size() != size)
+            throw new IllegalArgumentException(
+                    "structure.size() != size: " + structure.size()
+                     + " != " + size);
+        if (structure.getTotalCells() != totalCells)
+            throw new IllegalArgumentException(
+                    "structure.getTotalCells() != totalCells: "
+                     + structure.getTotalCells() + " != " + totalCells);
+        this.structure = structure;
+        plan = SolverPlan.getInstance(structure);
+        if (!Box9Engine.supports(structure))
+            box9 = null;
+        else if (box9 == null)
+            box9 = new Box9Engine();
+        Arrays.fill(givenPuzzle, -1);
+        Arrays.fill(grid, -1);
+        solution = grid;
+        opStack.clear();
+        cellIndexQueue.clear();
+        invalidateClues();
+        elapsedTime = 0;
+        guesses = 0;
+    }
+
+    /**
+     * Returns the plan of this solver, which is shared with the other solvers
+     * of the same structure.
+     *
+     * @return the plan of this solver
+     */
+    public SolverPlan getPlan() {
+        return plan;
+    }
+
     /**
      * <p>
      * Sets the specified string as a puzzle to solve. Returns {@code false} if
@@ -87,12 +170,123 @@ public final class SudokuSolver {
             throw new IllegalArgumentException();
         if (type.isValidPuzzle(puzzle)) {
             convert(type, puzzle.toCharArray(), givenPuzzle);
+            invalidateClues();
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Sets the specified puzzle, given as symbol indexes, to solve. A blank
+     * cell is represented by -1. Returns {@code false} if any index is out of
+     * range or if two neighbor cells have the same symbol.
+     *
+     * @param puzzle symbol indexes of the puzzle; its length must be the
+     *     number of cells of the structure of this solver
+     * @return {@code true} if the puzzle is valid and the setting succeed
+     */
+    public boolean setPuzzle(int[] puzzle) {
+        if (puzzle.length != totalCells)
+            throw new IllegalArgumentException(
+                    "puzzle.length != totalCells: " + puzzle.length
+                     + " != " + totalCells);
+        for (int i = 0; i < totalCells; ++i) {
+            int symbol = puzzle[i];
+            if (symbol < -1 || symbol >= size)
+                return false;
+            if (symbol < 0)
+                continue;
+            for (int k = plan.neighborStart[i]; k < plan.neighborStart[i + 1]; ++k)
+                if (puzzle[plan.neighbors[k]] == symbol)
+                    return false;
+        }
+        System.arraycopy(puzzle, 0, givenPuzzle, 0, totalCells);
+        invalidateClues();
+        return true;
+    }
+
+    /**
+     * <p>
+     * Adds the specified clue to the given puzzle, or replaces the clue of
+     * the cell if it already has one. Returns {@code false}, leaving the
+     * puzzle unchanged, if a neighbor cell has the same symbol as a clue.
+     * </p>
+     * <p>
+     * Unlike {@link #setPuzzle(int[])}, it does not discard the state of the
+     * solver: the candidates of the neighbor cells are updated, and the
+     * update is recorded so that it can be retracted by
+     * {@link #removeClue(int)}. The next {@link #solvePuzzle()} starts from
+     * the updated state. Any solution found before is discarded.
+     * </p>
+     *
+     * @param cell index of the cell
+     * @param symbol symbol index of the clue
+     * @return {@code true} if the clue is added
+     * @throws IllegalArgumentException if the cell or the symbol index is out
+     *     of range
+     */
+    public boolean addClue(int cell, int symbol) {
+        checkCell(cell);
+        if (symbol < 0 || symbol >= size)
+            throw new IllegalArgumentException(
+                    "symbol out of range: " + symbol);
+        for (int k = plan.neighborStart[cell]; k < plan.neighborStart[cell + 1]; ++k)
+            if (givenPuzzle[plan.neighbors[k]] == symbol)
+                return false;
+        if (givenPuzzle[cell] == symbol) {
+            prepareClues();
+            return true;
+        }
+        if (givenPuzzle[cell] >= 0)
+            removeClue(cell);
+        else
+            prepareClues();
+        givenPuzzle[cell] = symbol;
+        pushClue(cell, symbol);
+        return true;
+    }
+
+    /**
+     * <p>
+     * Removes the clue of the specified cell from the given puzzle. Nothing
+     * happens if the cell has no clue.
+     * </p>
+     * <p>
+     * The updates made by the clue, and by the clues added after it, are
+     * retracted, and the clues added after it are added again, so removing
+     * the last added clue is as cheap as adding it. Removing a clue that was
+     * set by {@link #setPuzzle(int[])} recomputes all candidates.
+     * </p>
+     *
+     * @param cell index of the cell
+     * @throws IllegalArgumentException if the cell index is out of range
+     * @see #addClue(int, int)
+     */
+    public void removeClue(int cell) {
+        checkCell(cell);
+        if (givenPuzzle[cell] < 0)
+            return;
+        givenPuzzle[cell] = -1;
+        int k = numClueCells - 1;
+        if (clueLayerSize >= 0)
+            while (k >= 0 && clueCells[k] != cell)
+                --k;
+        if (clueLayerSize < 0 || k < 0) {
+            invalidateClues();
+            prepareClues();
+            return;
+        }
+        prepareClues();
+        int n = numClueCells;
+        for (int m = n; m > k; --m)
+            cancelUpdate();
+        numClueCells = k;
+        clueLayerSize = opStack.size();
+        for (int m = k + 1; m < n; ++m)
+            pushClue(clueCells[m], givenPuzzle[clueCells[m]]);
+    }
+
     /**
      * <p>
      * Returns the last assigned puzzle or {@code null} if this does not have
@@ -117,6 +311,81 @@ public final class SudokuSolver {
         return String.valueOf(convert(type, givenPuzzle));
     }
 
+    /**
+     * Writes the last assigned puzzle, in the symbols of the specified type,
+     * into the specified array, starting at the specified offset.
+     *
+     * @param type Sudoku type to be referenced to write symbols
+     * @param dest array into which the puzzle is written
+     * @param offset index of {@code dest} at which the first cell is written
+     * @throws IllegalArgumentException if the type does not match with the
+     *     structure of this solver
+     * @throws IndexOutOfBoundsException if {@code dest} does not have room
+     *     for all cells from {@code offset}
+     * @see #getSolution(SudokuType, char[], int)
+     */
+    public void getGivenPuzzle(SudokuType type, char[] dest, int offset) {
+        checkType(type);
+        checkRange(dest.length, offset);
+        write(type, givenPuzzle, dest, offset);
+    }
+
+    /**
+     * Writes the last assigned puzzle, in the symbols of the specified type,
+     * into the specified array as one byte per cell, starting at the
+     * specified offset.
+     *
+     * @param type Sudoku type to be referenced to write symbols, whose
+     *     symbols and blank must be in ISO-8859-1
+     * @param dest array into which the puzzle is written
+     * @param offset index of {@code dest} at which the first cell is written
+     * @throws IllegalArgumentException if the type does not match with the
+     *     structure of this solver, or has a character out of ISO-8859-1
+     * @throws IndexOutOfBoundsException if {@code dest} does not have room
+     *     for all cells from {@code offset}
+     * @see #getSolution(SudokuType, byte[], int)
+     */
+    public void getGivenPuzzle(SudokuType type, byte[] dest, int offset) {
+        checkByteType(type);
+        checkRange(dest.length, offset);
+        write(type, givenPuzzle, dest, offset);
+    }
+
+    /**
+     * Writes the last assigned puzzle, in the symbols of the specified type,
+     * into the specified buffer as one byte per cell, starting at its
+     * position, which is advanced by the number of cells.
+     *
+     * @param type Sudoku type to be referenced to write symbols, whose
+     *     symbols and blank must be in ISO-8859-1
+     * @param dest buffer into which the puzzle is written
+     * @throws IllegalArgumentException if the type does not match with the
+     *     structure of this solver, or has a character out of ISO-8859-1
+     * @throws BufferOverflowException if {@code dest} does not
+     *     have room for all cells
+     * @see #getSolution(SudokuType, ByteBuffer)
+     */
+    public void getGivenPuzzle(SudokuType type, ByteBuffer dest) {
+        checkByteType(type);
+        write(type, givenPuzzle, dest);
+    }
+
+    /**
+     * Appends the last assigned puzzle, in the symbols of the specified
+     * type, to the specified {@link Appendable}.
+     *
+     * @param type Sudoku type to be referenced to write symbols
+     * @param dest destination to which the puzzle is appended
+     * @throws IllegalArgumentException if the type does not match with the
+     *     structure of this solver
+     * @throws IOException if {@code dest} throws it
+     */
+    public void getGivenPuzzle(SudokuType type, Appendable dest)
+            throws IOException {
+        checkType(type);
+        write(type, givenPuzzle, dest);
+    }
+
     /**
      * <p>
      * Returns the solution if it solved the given puzzle.
@@ -134,7 +403,130 @@ public final class SudokuSolver {
     public String getSolution(SudokuType type) {
         if (!structure.equals(type.getStructure()))
             throw new IllegalArgumentException();
-        return String.valueOf(convert(type, grid));
+        return String.valueOf(convert(type, solution));
+    }
+
+    /**
+     * Returns the solution, as symbol indexes, if it solved the given puzzle.
+     * Unlike {@link #getSolution(SudokuType)}, it does not depend on symbols,
+     * so it works for any size.
+     *
+     * @return the solution as symbol indexes if it solved the given puzzle
+     * @see SudokuTokenFormat
+     */
+    public int[] getSolution() {
+        return solution.clone();
+    }
+
+    /**
+     * Copies the solution, as symbol indexes, into the specified array if it
+     * solved the given puzzle. Unlike {@link #getSolution()}, it does not
+     * allocate anything, so it can be called for every puzzle of a batch.
+     *
+     * @param dest array into which the solution is copied
+     * @throws IllegalArgumentException if the length of the array is not the
+     *     number of cells of the structure
+     */
+    public void getSolution(int[] dest) {
+        if (dest.length != totalCells)
+            throw new IllegalArgumentException(
+                    "dest.length != totalCells: " + dest.length
+                     + " != " + totalCells);
+        System.arraycopy(solution, 0, dest, 0, totalCells);
+    }
+
+    /**
+     * <p>
+     * Returns the solution, as symbol indexes, without copying it. It is
+     * valid until the next call of a method that changes the puzzle or
+     * solves it.
+     * </p>
+     * <p>
+     * <b>Warning:</b> Unlike {@link #getSolution()}, the returned array is
+     * not a newly allocated one (for performance); a caller must not change
+     * the values in the returned array.
+     * </p>
+     *
+     * @return the solution as symbol indexes, which must not be modified
+     */
+    public int[] getSolutionView() {
+        return solution;
+    }
+
+    /**
+     * Writes the solution, in the symbols of the specified type, into the
+     * specified array, starting at the specified offset. Unlike
+     * {@link #getSolution(SudokuType)}, no string is created.
+     *
+     * @param type Sudoku type to be referenced to write symbols
+     * @param dest array into which the solution is written
+     * @param offset index of {@code dest} at which the first cell is written
+     * @throws IllegalArgumentException if the type does not match with the
+     *     structure of this solver
+     * @throws IndexOutOfBoundsException if {@code dest} does not have room
+     *     for all cells from {@code offset}
+     */
+    public void getSolution(SudokuType type, char[] dest, int offset) {
+        checkType(type);
+        checkRange(dest.length, offset);
+        write(type, solution, dest, offset);
+    }
+
+    /**
+     * Writes the solution, in the symbols of the specified type, into the
+     * specified array as one byte per cell, starting at the specified offset.
+     * Each byte is the ISO-8859-1 encoding of a symbol, which is ASCII for
+     * the preset types.
+     *
+     * @param type Sudoku type to be referenced to write symbols, whose
+     *     symbols and blank must be in ISO-8859-1
+     * @param dest array into which the solution is written
+     * @param offset index of {@code dest} at which the first cell is written
+     * @throws IllegalArgumentException if the type does not match with the
+     *     structure of this solver, or has a character out of ISO-8859-1
+     * @throws IndexOutOfBoundsException if {@code dest} does not have room
+     *     for all cells from {@code offset}
+     */
+    public void getSolution(SudokuType type, byte[] dest, int offset) {
+        checkByteType(type);
+        checkRange(dest.length, offset);
+        write(type, solution, dest, offset);
+    }
+
+    /**
+     * Writes the solution, in the symbols of the specified type, into the
+     * specified buffer as one byte per cell, starting at its position, which
+     * is advanced by the number of cells.
+     *
+     * @param type Sudoku type to be referenced to write symbols, whose
+     *     symbols and blank must be in ISO-8859-1
+     * @param dest buffer into which the solution is written
+     * @throws IllegalArgumentException if the type does not match with the
+     *     structure of this solver, or has a character out of ISO-8859-1
+     * @throws BufferOverflowException if {@code dest} does not
+     *     have room for all cells
+     * @see #getSolution(SudokuType, byte[], int)
+     */
+    public void getSolution(SudokuType type, ByteBuffer dest) {
+        checkByteType(type);
+        write(type, solution, dest);
+    }
+
+    /**
+     * Appends the solution, in the symbols of the specified type, to the
+     * specified {@link Appendable}, such as a {@link StringBuilder} or a
+     * {@link java.io.Writer}.
+     *
+     * @param type Sudoku type to be referenced to write symbols
+     * @param dest destination to which the solution is appended
+     * @throws IllegalArgumentException if the type does not match with the
+     *     structure of this solver
+     * @throws IOException if {@code dest} throws it
+     */
+    public void getSolution(SudokuType type, Appendable dest)
+            throws IOException {
+        checkType(type);
+        write(type, solution, dest);
     }
 
     /**
@@ -160,9 +552,16 @@ public final class SudokuSolver {
     }
 
     /**
+     * <p>
      * Solves the assigned puzzle. Returns {@code true} if it solved the
      * puzzle; otherwise {@code false}, especially if it has not been given a
      * puzzle or if the given puzzle is not valid.
+     * </p>
+     * <p>
+     * For the regular 9×9 structure with 3×3 boxes, a dedicated engine with
+     * bit boards is used instead of the generic search, and the number of
+     * guesses is counted by that engine.
+     * </p>
      *
      * @return {@code true} if it solved the puzzle; otherwise {@code false},
      *     especially if it has not been given a puzzle or if the given
@@ -176,19 +575,51 @@ public final class SudokuSolver {
         initTime = System.nanoTime();
         elapsedTime = 0;
         guesses = 0;
-        for (int i = 0; i < totalCells; ++i)
-            grid[i] = givenPuzzle[i];
-        makeInitialCandidateLists();
-        opStack.clear();
+        if (box9 != null)
+            return finishBox9(box9.solve(givenPuzzle));
+        prepareClues();
         opStack.push(SAVE_POINT);
-        cellIndexQueue.clear();
-        for (int i = 0; i < totalCells; ++i)
-            if (grid[i] < 0)
-                cellIndexQueue.push(i, candidates[i].cardinality());
-        assignPhase = false;
+        backjump = plan.multiGrid;
         return solve();
     }
 
+    /**
+     * <p>
+     * Propagates the given puzzle logically, without guessing: naked and
+     * hidden singles are assigned and the other techniques of this solver
+     * are applied until nothing changes, a contradiction is found or all
+     * cells are assigned. Returns the candidates of all cells at that point.
+     * </p>
+     * <p>
+     * It starts from the state kept for the clues, as {@link #solvePuzzle()}
+     * does, and the state is retracted afterwards, so it is cheap enough to
+     * be called after each {@link #addClue(int, int)}. Any solution found
+     * before is discarded.
+     * </p>
+     *
+     * @return the result of propagation
+     */
+    public SudokuPropagation propagate() {
+        prepareClues();
+        opStack.push(SAVE_POINT);
+        boolean consistent = propagateToFixpoint();
+        int wordsPerCell = (size + 63) >>> 6;
+        long[] masks = new long[totalCells * wordsPerCell];
+        for (int i = 0; i < totalCells; ++i) {
+            int offset = i * wordsPerCell;
+            if (grid[i] >= 0)
+                masks[offset + (grid[i] >>> 6)] = 1L << grid[i];
+            else
+                candidates[i].getWords(masks, offset);
+        }
+        SudokuPropagation result = new SudokuPropagation(
+                size, masks, !consistent,
+                consistent && cellIndexQueue.isEmpty());
+        while (opStack.size() > clueLayerSize)
+            cancelUpdate();
+        return result;
+    }
+
     /**
      * Continues the previous solving process for another solution. If the
      * solver has never solved any puzzle or there is no another solution, this
@@ -201,13 +632,39 @@ public final class SudokuSolver {
      *     no another solution
      */
     public boolean solvePuzzleForAnotherSolution() {
-        if (opStack.isEmpty() || guesses == 0)
+        if (box9 != null) {
+            if (guesses == 0)
+                return false;
+            aborted = false;
+            initTime = System.nanoTime();
+            return finishBox9(box9.next());
+        }
+        if (clueLayerSize < 0 || opStack.size() <= clueLayerSize || guesses == 0)
             return false;
         aborted = false;
         initTime = System.nanoTime();
         return solve();
     }
 
+    /**
+     * Counts the solutions of the assigned puzzle, up to the specified limit.
+     * It solves the puzzle from the beginning and then keeps searching for
+     * another solution until there is no more solution or the limit is
+     * reached. If aborted, the number of solutions found so far is returned.
+     *
+     * @param limit the maximum number of solutions to be counted
+     * @return the number of solutions found, which is at most {@code limit}
+     * @see #abort()
+     */
+    public long countSolutions(long limit) {
+        if (limit < 1 || !solvePuzzle())
+            return 0;
+        long count = 1;
+        while (count < limit && solvePuzzleForAnotherSolution())
+            ++count;
+        return count;
+    }
+
     /**
      * Aborts the current solving process. When aborted, the currently running
      * call for {@link #solvePuzzle} or
@@ -217,6 +674,9 @@ public final class SudokuSolver {
      */
     public void abort() {
         aborted = true;
+        Box9Engine engine = box9;
+        if (engine != null)
+            engine.abort();
     }
 
     /**
@@ -243,23 +703,182 @@ public final class SudokuSolver {
 
     private char[] convert(SudokuType type, int[] puzzle) {
         char[] converted = new char[totalCells];
-        for (int i = 0; i < totalCells; ++i)
-            if (puzzle[i] == -1)
-                converted[i] = type.getBlank();
-            else
-                converted[i] = type.getSymbols().get(puzzle[i]);
+        write(type, puzzle, converted, 0);
         return converted;
     }
 
+    private void write(SudokuType type, int[] puzzle, char[] dest, int offset) {
+        SymbolSet symbols = type.getSymbols();
+        char blank = type.getBlank();
+        for (int i = 0; i < totalCells; ++i)
+            dest[offset + i] = puzzle[i] == -1 ? blank : symbols.get(puzzle[i]);
+    }
+
+    private void write(SudokuType type, int[] puzzle, byte[] dest, int offset) {
+        SymbolSet symbols = type.getSymbols();
+        char blank = type.getBlank();
+        for (int i = 0; i < totalCells; ++i)
+            dest[offset + i] = (byte) (puzzle[i] == -1
+                    ? blank : symbols.get(puzzle[i]));
+    }
+
+    private void write(SudokuType type, int[] puzzle, ByteBuffer dest) {
+        if (dest.remaining() < totalCells)
+            throw new BufferOverflowException();
+        SymbolSet symbols = type.getSymbols();
+        char blank = type.getBlank();
+        for (int i = 0; i < totalCells; ++i)
+            dest.put((byte) (puzzle[i] == -1
+                    ? blank : symbols.get(puzzle[i])));
+    }
+
+    private void write(SudokuType type, int[] puzzle, Appendable dest)
+            throws IOException {
+        SymbolSet symbols = type.getSymbols();
+        char blank = type.getBlank();
+        for (int i = 0; i < totalCells; ++i)
+            dest.append(puzzle[i] == -1 ? blank : symbols.get(puzzle[i]));
+    }
+
+    private void checkType(SudokuType type) {
+        if (!structure.equals(type.getStructure()))
+            throw new IllegalArgumentException();
+    }
+
+    /** Checks that the symbols and blank of the type fit in a byte each. */
+    private void checkByteType(SudokuType type) {
+        checkType(type);
+        SymbolSet symbols = type.getSymbols();
+        if (type.getBlank() > 0xFF)
+            throw new IllegalArgumentException(
+                    "blank > 0xFF: " + type.getBlank());
+        for (int k = 0; k < symbols.size(); ++k)
+            if (symbols.get(k) > 0xFF)
+                throw new IllegalArgumentException(
+                        "symbol > 0xFF: " + symbols.get(k));
+    }
+
+    private void checkRange(int length, int offset) {
+        if (offset < 0 || offset > length - totalCells)
+            throw new IndexOutOfBoundsException(
+                    "offset: " + offset + ", length: " + length);
+    }
+
+    private boolean finishBox9(boolean solved) {
+        guesses = box9.getGuesses();
+        solution = solved ? box9.getGrid() : grid;
+        elapsedTime += System.nanoTime() - initTime;
+        return solved;
+    }
+
+    private void invalidateClues() {
+        clueLayerSize = -1;
+        if (box9 != null)
+            box9.clear();
+    }
+
+    private void checkCell(int cell) {
+        if (cell < 0 || cell >= totalCells)
+            throw new IllegalArgumentException("cell out of range: " + cell);
+    }
+
+    /**
+     * Retracts the state of the last solving down to the clue layer, or
+     * builds the layer from the given puzzle if it is not valid.
+     */
+    private void prepareClues() {
+        solution = grid;
+        if (box9 != null)
+            box9.clear();
+        if (clueLayerSize < 0) {
+            for (int i = 0; i < totalCells; ++i)
+                grid[i] = givenPuzzle[i];
+            makeInitialCandidateLists();
+            opStack.clear();
+            cellIndexQueue.clear();
+            for (int i = 0; i < totalCells; ++i)
+                if (grid[i] < 0)
+                    cellIndexQueue.push(i, candidates[i].cardinality());
+            numClueCells = 0;
+            clueLayerSize = 0;
+        } else {
+            while (opStack.size() > clueLayerSize)
+                cancelUpdate();
+        }
+        assignPhase = false;
+    }
+
+    /**
+     * Assigns the clue on top of the clue layer. Unlike
+     * {@link #updateCandidateLists(int)}, a neighbor cell may be left with
+     * no candidates, which the search finds as a dead end.
+     */
+    private void pushClue(int cell, int symbol) {
+        opStack.push(SAVE_POINT);
+        grid[cell] = symbol;
+        opStack.push(ASSIGN, cell, symbol);
+        cellIndexQueue.remove(cell);
+        int[] neighbors = plan.neighbors;
+        for (int k = plan.neighborStart[cell],
+                 end = plan.neighborStart[cell + 1]; k < end; ++k) {
+            int i = neighbors[k];
+            SimpleSet cands = candidates[i];
+            if (grid[i] < 0 && cands.contains(symbol)) {
+                cands.remove(symbol);
+                opStack.push(DELETE_CANDIDATE, i, symbol);
+                cellIndexQueue.updatePriority(i, cands.cardinality());
+            }
+        }
+        clueCells[numClueCells++] = cell;
+        clueLayerSize = opStack.size();
+    }
+
+    /**
+     * Assigns singles and applies the techniques until nothing changes.
+     * Returns {@code false} if a contradiction is found.
+     */
+    private boolean propagateToFixpoint() {
+        for (;;) {
+            if (cellIndexQueue.isEmpty())
+                return true;
+            int index = cellIndexQueue.peek();
+            int numCandidates = cellIndexQueue.getPriority(index);
+            if (numCandidates == 0)
+                return false;
+            if (numCandidates > 1) {
+                int newCellIndex = findHiddenSingle();
+                if (newCellIndex != -1) {
+                    index = newCellIndex;
+                    numCandidates = 1;
+                }
+            }
+            if (numCandidates == 1) {
+                if (!updateCandidateLists(index))
+                    return false;
+                continue;
+            }
+            int opStackSize = opStack.size();
+            for (Technique s : techniques)
+                if (!s.resolve())
+                    return false;
+            if (opStackSize == opStack.size())
+                return true;
+        }
+    }
+
     private void makeInitialCandidateLists() {
+        int[] neighborStart = plan.neighborStart;
+        int[] neighbors = plan.neighbors;
         for (int i = 0; i < totalCells; ++i) {
             candidates[i].clear();
             if (grid[i] < 0) {
                 for (int j = 0; j < size; ++j)
                     candidates[i].add(j);
-                for (int j : structure.getNeighborCells(i))
+                for (int k = neighborStart[i]; k < neighborStart[i + 1]; ++k) {
+                    int j = neighbors[k];
                     if (grid[j] >= 0)
                         candidates[i].remove(grid[j]);
+                }
             }
         }
     }
@@ -280,6 +899,7 @@ public final class SudokuSolver {
                    a solution is found. */
                 if (cellIndexQueue.isEmpty()) {
                     assignPhase = true;
+                    backjump = false;
                     elapsedTime += System.nanoTime() - initTime;
                     return true;
                 }
@@ -288,6 +908,8 @@ public final class SudokuSolver {
                    that has minimum candidate characters. */
                 int index = cellIndexQueue.peek();
                 int numCandidates = cellIndexQueue.getPriority(index);
+                if (plan.multiGrid && numCandidates > 1 && !plan.shared[index])
+                    index = findSharedCell(index, numCandidates);
 
                 /* Find a hidden single if a naked single is not found. */
                 if (numCandidates > 1) {
@@ -330,7 +952,7 @@ public final class SudokuSolver {
                 opStack.push(CONTROL_VARS, index, numCandidates, -1);
                 assignPhase = true;
             } else {
-                if (opStack.isEmpty()) {
+                if (opStack.size() <= clueLayerSize) {
                     elapsedTime += System.nanoTime() - initTime;
                     return false;
                 }
@@ -355,6 +977,8 @@ public final class SudokuSolver {
                     }
                 }
                 cancelUpdate();
+                if (backjump)
+                    skipIndependentGuesses(index);
             }
         }
         elapsedTime += System.nanoTime() - initTime;
@@ -365,7 +989,10 @@ public final class SudokuSolver {
         grid[updated] = candidates[updated].next();
         opStack.push(ASSIGN, updated, grid[updated]);
         cellIndexQueue.remove(updated);
-        for (int i : structure.getNeighborCells(updated)) {
+        int[] neighbors = plan.neighbors;
+        for (int k = plan.neighborStart[updated],
+                 end = plan.neighborStart[updated + 1]; k < end; ++k) {
+            int i = neighbors[k];
             if (grid[i] < 0) {
                 int symbol = grid[updated];
                 SimpleSet cands = candidates[i];
@@ -401,6 +1028,57 @@ public final class SudokuSolver {
         }
     }
 
+    /**
+     * Returns a cell shared by grids that has the specified number of
+     * candidates, or the specified cell if there is no such cell.
+     */
+    private int findSharedCell(int index, int numCandidates) {
+        for (int i : cellIndexQueue.getElements()) {
+            if (i == -1)
+                break;
+            if (plan.shared[i] && cellIndexQueue.getPriority(i) == numCandidates)
+                return i;
+        }
+        return index;
+    }
+
+    /**
+     * Pops the guesses on cells which were not connected to the failed cell
+     * through blank cells when they were made. Such a guess only affected
+     * its own part of the board, so none of its other candidates can make
+     * the failed part solvable. It is only done until the first solution is
+     * found, since afterwards a guess may fail after having led to solutions.
+     */
+    private void skipIndependentGuesses(int failed) {
+        while (opStack.size() > clueLayerSize
+                && opStack.peek()[0] == CONTROL_VARS
+                && !isConnected(opStack.peek()[1], failed))
+            cancelUpdate();
+    }
+
+    private boolean isConnected(int from, int to) {
+        int[] neighborStart = plan.neighborStart;
+        int[] neighbors = plan.neighbors;
+        Arrays.fill(reached, false);
+        int head = 0;
+        int tail = 0;
+        componentQueue[tail++] = from;
+        reached[from] = true;
+        while (head < tail) {
+            int i = componentQueue[head++];
+            if (i == to)
+                return true;
+            for (int k = neighborStart[i]; k < neighborStart[i + 1]; ++k) {
+                int j = neighbors[k];
+                if (grid[j] < 0 && !reached[j]) {
+                    reached[j] = true;
+                    componentQueue[tail++] = j;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Scans rows, columns and boxes to find a cell that has a candidate which
      * is unique along the row, the column or the box which the cell belongs.
@@ -414,8 +1092,8 @@ public final class SudokuSolver {
             SimpleSet cands = candidates[i];
             for (int j = 0, n = cands.cardinality(); j < n; ++j) {
                 int c = cands.next();
-                for (int cgIndex : structure.getCellGroupIndexes(i)) {
-                    if (findHiddenSingleHelper(i, c, structure.getCellGroup(cgIndex))) {
+                for (int m = plan.memberStart[i]; m < plan.memberStart[i + 1]; ++m) {
+                    if (findHiddenSingleHelper(i, c, plan.memberGroups[m])) {
                         cands.withdrawCursor();
                         return i;
                     }
@@ -425,10 +1103,14 @@ public final class SudokuSolver {
         return -1;
     }
 
-    private boolean findHiddenSingleHelper(int i, int c, int[] cellGroup) {
-        for (int k : cellGroup)
+    private boolean findHiddenSingleHelper(int i, int c, int cgIndex) {
+        int[] groupCells = plan.groupCells;
+        for (int m = plan.groupStart[cgIndex],
+                 end = plan.groupStart[cgIndex + 1]; m < end; ++m) {
+            int k = groupCells[m];
             if (candidates[k].contains(c) && grid[k] < 0 && i != k)
                 return false;
+        }
         return true;
     }
 
@@ -456,8 +1138,8 @@ public final class SudokuSolver {
                 if (cands.cardinality() == 2) {
                     int c1 = cands.next();
                     int c2 = cands.next();
-                    for (int cgIndex : structure.getCellGroupIndexes(i))
-                        if (!helper(i, cands, c1, c2, structure.getCellGroup(cgIndex)))
+                    for (int m = plan.memberStart[i]; m < plan.memberStart[i + 1]; ++m)
+                        if (!helper(i, cands, c1, c2, plan.memberGroups[m]))
                             return false;
                 }
             }
@@ -469,13 +1151,18 @@ public final class SudokuSolver {
                 SimpleSet candidatesI,
                 int c1,
                 int c2,
-                int[] cellGroup) {
-            for (int j : cellGroup) {
+                int cgIndex) {
+            int[] groupCells = plan.groupCells;
+            int start = plan.groupStart[cgIndex];
+            int end = plan.groupStart[cgIndex + 1];
+            for (int m = start; m < end; ++m) {
+                int j = groupCells[m];
                 if (i == j)
                     continue;
                 SimpleSet candidatesJ = candidates[j];
                 if (grid[j] < 0 && candidatesI.equals(candidatesJ))
-                    for (int k : cellGroup)
+                    for (int n = start; n < end; ++n) {
+                        int k = groupCells[n];
                         if (grid[k] < 0 && i != k && j != k) {
                             SimpleSet candidatesK = candidates[k];
                             int numCandidates = candidatesK.cardinality();
@@ -492,6 +1179,7 @@ public final class SudokuSolver {
                             if (numCandidates == 0)
                                 return false;
                         }
+                    }
             }
             return true;
         }
@@ -499,27 +1187,26 @@ public final class SudokuSolver {
 
     private class Interactions implements Technique {
 
-        private final SimpleSet merged = new BooleanArraySimpleSet(size);
+        private final SimpleSet merged = new LongArraySimpleSet(size);
 
         @Override
         public boolean resolve() {
-            int n = structure.getNumCellGroups();
-            for (int cgIndex1 = 0; cgIndex1 < n; ++cgIndex1) {
-                for (int cgIndex2 = cgIndex1 + 1; cgIndex2 < n; ++cgIndex2) {
-                    if (structure.getNumIntersections(cgIndex1, cgIndex2) <= 1)
-                        continue;
-                    if (!helper(cgIndex1, cgIndex2))
-                        return false;
-                    if (!helper(cgIndex2, cgIndex1))
-                        return false;
-                }
+            for (int p = 0, n = plan.pairs.length; p < n; p += 2) {
+                if (!helper(p, p + 1))
+                    return false;
+                if (!helper(p + 1, p))
+                    return false;
             }
             return true;
         }
 
-        private boolean helper(int cgIndex1, int cgIndex2) {
+        /* diff1 and diff2 are rows of the diff table of the plan. */
+        private boolean helper(int diff1, int diff2) {
+            int[] diffStart = plan.diffStart;
+            int[] diffCells = plan.diffCells;
             merged.clear();
-            for (int k : structure.getCellGroupDiff(cgIndex1, cgIndex2)) {
+            for (int m = diffStart[diff1]; m < diffStart[diff1 + 1]; ++m) {
+                int k = diffCells[m];
                 if (grid[k] >= 0)
                     merged.add(grid[k]);
                 else
@@ -532,7 +1219,8 @@ public final class SudokuSolver {
             while (merged.cardinality() != 0) {
                 c = merged.next();
                 merged.remove(c);
-                for (int k : structure.getCellGroupDiff(cgIndex2, cgIndex1)) {
+                for (int m = diffStart[diff2]; m < diffStart[diff2 + 1]; ++m) {
+                    int k = diffCells[m];
                     if (grid[k] >= 0)
                         continue;
                     SimpleSet cands = candidates[k];
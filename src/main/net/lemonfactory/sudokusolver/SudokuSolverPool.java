@@ -0,0 +1,230 @@
+package net.lemonfactory.sudokusolver;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.lemonfactory.sudokusolver.type.SudokuTypeStructure;
+
+/**
+ * <p>
+ * Pool of {@link SudokuSolver} instances keyed by structure. A solver is
+ * borrowed for one structure, used by a single thread, and then released back
+ * to the pool. The number of solvers of each structure is limited; borrowing
+ * blocks while all of them are in use. Released solvers that have been idle
+ * for longer than the idle timeout are evicted, and a structure without idle
+ * or borrowed solvers is dropped from the pool.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @author Choongmin Lee
+ */
+public final class SudokuSolverPool {
+
+    private final int maxSolversPerStructure;
+    private final long idleTimeout;  // in nanoseconds
+    private final ConcurrentMap<SudokuTypeStructure, Partition> partitions;
+    private final Map<SudokuSolver, Partition> borrowers;  // by identity
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxSolversPerStructure the maximum number of solvers of each
+     *     structure
+     * @param idleTimeout time after which an idle solver can be evicted
+     * @param unit unit of {@code idleTimeout}
+     */
+    public SudokuSolverPool(
+            int maxSolversPerStructure, long idleTimeout, TimeUnit unit) {
+        if (maxSolversPerStructure < 1)
+            throw new IllegalArgumentException(
+                    "maxSolversPerStructure < 1: " + maxSolversPerStructure);
+        if (idleTimeout < 0)
+            throw new IllegalArgumentException("idleTimeout < 0: " + idleTimeout);
+        this.maxSolversPerStructure = maxSolversPerStructure;
+        this.idleTimeout = unit.toNanos(idleTimeout);
+        this.partitions = new ConcurrentHashMap<SudokuTypeStructure, Partition>();
+        this.borrowers = Collections.synchronizedMap(
+                new IdentityHashMap<SudokuSolver, Partition>());
+    }
+
+    public int getMaxSolversPerStructure() {
+        return maxSolversPerStructure;
+    }
+
+    /**
+     * Borrows a solver for the specified structure, waiting if all solvers of
+     * the structure are in use.
+     *
+     * @param structure structure of the solver
+     * @return a solver for the structure
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public SudokuSolver borrow(SudokuTypeStructure structure)
+            throws InterruptedException {
+        for (;;) {
+            Partition partition = getPartition(structure);
+            partition.permits.acquire();
+            SudokuSolver solver = partition.take();
+            if (solver != null)
+                return solver;
+            partition.permits.release();
+        }
+    }
+
+    /**
+     * Borrows a solver for the specified structure, waiting up to the
+     * specified time if all solvers of the structure are in use. Returns
+     * {@code null} if the time elapsed.
+     *
+     * @param structure structure of the solver
+     * @param timeout the maximum time to wait
+     * @param unit unit of {@code timeout}
+     * @return a solver for the structure, or {@code null} if the time elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public SudokuSolver borrow(SudokuTypeStructure structure,
+                               long timeout,
+                               TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (;;) {
+            Partition partition = getPartition(structure);
+            if (!partition.permits.tryAcquire(
+                    deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+                return null;
+            SudokuSolver solver = partition.take();
+            if (solver != null)
+                return solver;
+            partition.permits.release();
+        }
+    }
+
+    /**
+     * Releases a borrowed solver back to this pool. The solver must not be
+     * solving a puzzle, and must not be used after it is released. It is
+     * returned to the structure it was borrowed for; if its structure has
+     * been changed since, it is discarded instead of being kept idle.
+     *
+     * @param solver solver borrowed from this pool
+     * @throws IllegalStateException if the solver is not borrowed from this
+     *     pool, or has already been released
+     */
+    public void release(SudokuSolver solver) {
+        Partition partition = borrowers.remove(solver);
+        if (partition == null)
+            throw new IllegalStateException("not borrowed from this pool");
+        partition.put(solver);
+        partition.permits.release();
+    }
+
+    /**
+     * Evicts all solvers that have been idle for longer than the idle
+     * timeout. It is also done for a structure whenever a solver of the
+     * structure is borrowed or released.
+     *
+     * @return the number of evicted solvers
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Partition partition : partitions.values())
+            evicted += partition.evictAndRetire(now);
+        return evicted;
+    }
+
+    /**
+     * Returns the number of idle solvers in this pool.
+     *
+     * @return the number of idle solvers in this pool
+     */
+    public int getIdleCount() {
+        int n = 0;
+        for (Partition partition : partitions.values())
+            n += partition.getIdleCount();
+        return n;
+    }
+
+    private Partition getPartition(SudokuTypeStructure structure) {
+        Partition partition = partitions.get(structure);
+        if (partition == null) {
+            Partition p = new Partition(structure);
+            partition = partitions.putIfAbsent(structure, p);
+            if (partition == null)
+                partition = p;
+        }
+        return partition;
+    }
+
+    /**
+     * Solvers of one structure. A partition without idle and borrowed
+     * solvers is retired, that is, removed from the pool; a borrower that
+     * got it before then finds it retired and retries with a new one.
+     */
+    private final class Partition {
+
+        private final SudokuTypeStructure structure;
+        private final Semaphore permits;
+        private final Deque<SudokuSolver> idle;  // most recently used first
+        private final Deque<Long> releaseTimes;
+        private int borrowed;
+        private boolean retired;
+
+        public Partition(SudokuTypeStructure structure) {
+            this.structure = structure;
+            this.permits = new Semaphore(maxSolversPerStructure, true);
+            this.idle = new ArrayDeque<SudokuSolver>();
+            this.releaseTimes = new ArrayDeque<Long>();
+        }
+
+        /** Returns {@code null} if this partition is retired. */
+        public synchronized SudokuSolver take() {
+            if (retired)
+                return null;
+            evict(System.nanoTime());
+            ++borrowed;
+            SudokuSolver solver;
+            if (idle.isEmpty()) {
+                solver = new SudokuSolver(structure);
+            } else {
+                releaseTimes.removeFirst();
+                solver = idle.removeFirst();
+            }
+            borrowers.put(solver, this);
+            return solver;
+        }
+
+        public synchronized void put(SudokuSolver solver) {
+            --borrowed;
+            long now = System.nanoTime();
+            if (structure.equals(solver.getStructure())) {
+                idle.addFirst(solver);
+                releaseTimes.addFirst(now);
+            }
+            evictAndRetire(now);
+        }
+
+        public synchronized int evictAndRetire(long now) {
+            int evicted = evict(now);
+            if (borrowed == 0 && idle.isEmpty()) {
+                retired = true;
+                partitions.remove(structure, this);
+            }
+            return evicted;
+        }
+
+        public synchronized int evict(long now) {
+            int evicted = 0;
+            while (!idle.isEmpty() && now - releaseTimes.getLast() > idleTimeout) {
+                idle.removeLast();
+                releaseTimes.removeLast();
+                ++evicted;
+            }
+            return evicted;
+        }
+
+        public synchronized int getIdleCount() {
+            return idle.size();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package net.lemonfactory.sudokusolver;
+
+import net.lemonfactory.sudokusolver.type.SudokuTypeStructure;
+
+/**
+ * <p>
+ * Token form of puzzles, for structures too large to have a symbol for each
+ * value. A puzzle is a sequence of decimal tokens, one for each cell,
+ * separated by whitespace or commas; a value is written as a number from 1 to
+ * the size of the structure, and a blank as 0 or {@code '.'}. For example, a
+ * 100×100 puzzle has 10000 tokens of values from 1 to 100.
+ * </p>
+ * <p>
+ * Parsed puzzles are arrays of symbol indexes, which can be passed to
+ * {@link SudokuSolver#setPuzzle(int[])}, and solutions from
+ * {@link SudokuSolver#getSolution()} can be formatted back.
+ * </p>
+ *
+ * @author Choongmin Lee
+ */
+public final class SudokuTokenFormat {
+
+    /**
+     * Utility class.
+     */
+    private SudokuTokenFormat() {}
+
+    /**
+     * Parses the specified puzzle in the token form. Returns {@code null} if
+     * a token is not a number from 0 to the size of the structure or if the
+     * number of tokens is not the number of cells of the structure. Blanks
+     * become -1, and a value {@code v} becomes {@code v - 1}.
+     *
+     * @param structure structure of the puzzle
+     * @param puzzle puzzle in the token form
+     * @return symbol indexes of the puzzle, or {@code null} if the puzzle is
+     *     not well-formed
+     */
+    public static int[] parse(SudokuTypeStructure structure, String puzzle) {
+        int size = structure.size();
+        int[] parsed = new int[structure.getTotalCells()];
+        int n = 0;
+        int i = 0;
+        int length = puzzle.length();
+        while (i < length) {
+            char c = puzzle.charAt(i);
+            if (isSeparator(c)) {
+                ++i;
+                continue;
+            }
+            if (n == parsed.length)
+                return null;
+            if (c == '.') {
+                if (++i < length && !isSeparator(puzzle.charAt(i)))
+                    return null;
+                parsed[n++] = -1;
+                continue;
+            }
+            int value = 0;
+            int start = i;
+            while (i < length && !isSeparator(c = puzzle.charAt(i))) {
+                if (c < '0' || c > '9')
+                    return null;
+                value = value * 10 + (c - '0');
+                if (value > size)
+                    return null;
+                ++i;
+            }
+            if (i == start)
+                return null;
+            parsed[n++] = value - 1;
+        }
+        return n == parsed.length ? parsed : null;
+    }
+
+    /**
+     * Formats the specified puzzle, given as symbol indexes, in the token
+     * form. Tokens are separated by single spaces, and blanks are written as
+     * 0.
+     *
+     * @param puzzle symbol indexes of the puzzle; -1 for blanks
+     * @return the puzzle in the token form
+     */
+    public static String format(int[] puzzle) {
+        StringBuilder sb = new StringBuilder(puzzle.length * 3);
+        for (int i = 0; i < puzzle.length; ++i) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append(puzzle[i] + 1);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ',' || Character.isWhitespace(c);
+    }
+}
@@ -66,6 +66,17 @@ public class SudokuTypes {
             new SymbolSet("123456789"),
             '.');
 
+    /**
+     * Samurai Sudoku type with five overlapping 9×9 grids and symbols of 1-9.
+     * Its 369 cells are numbered in row-major order on a 21×21 board (see
+     * {@link SamuraiTypeStructure}). It is not one of the preset types, as the
+     * graphical interface only draws square boards.
+     */
+    public static final SudokuType SAMURAI_9 = new SudokuType(
+            SamuraiTypeStructure.getInstance(3, 3),
+            new SymbolSet("123456789"),
+            '.');
+
     public static final List<SudokuType> PRESET_TYPES =
             Collections.unmodifiableList(Arrays.asList(
                 BOX_9,
@@ -0,0 +1,218 @@
+package net.lemonfactory.sudokusolver;
+
+import java.util.Arrays;
+
+import net.lemonfactory.sudokusolver.type.*;
+
+/**
+ * <p>
+ * Verifier of complete grids, which tells whether a grid is a solution of
+ * its structure: every cell has a symbol, and the cells of every cell group
+ * have distinct symbols. The symbols of each cell group are accumulated
+ * into a bit mask, and the group is valid if the mask has as many bits as
+ * the group has cells, so no pair of cells is compared.
+ * </p>
+ * <p>
+ * For regular structures of rows, columns and boxes of size 64 or less, the
+ * masks of all rows, columns and boxes are accumulated in one pass over the
+ * cells without consulting cell groups, and the masks are compared with the
+ * full mask. Other structures go through the cell groups of their plan.
+ * </p>
+ * <p>
+ * Grids can be given as symbol indexes, in the compact format of one byte
+ * per cell (a symbol index, or {@code 0xFF} for a blank cell) used by
+ * {@link SudokuSolutionStore}, or as text in the symbols of a
+ * {@link SudokuType}. Thread-safety is not guaranteed; use one verifier per
+ * thread.
+ * </p>
+ *
+ * @author Choongmin Lee
+ */
+public final class SudokuVerifier {
+
+    private final SudokuTypeStructure structure;
+    private final SolverPlan plan;
+    private final int size;
+    private final int totalCells;
+    private final int boxWidth;
+    private final boolean regular;
+    private final long full;
+
+    private final int[] grid;
+    private final long[] masks;    // rows, columns and boxes, or one group
+
+    private SudokuType lastType;
+    private int[] symbolIndexes;   // index: character of lastType
+
+    public SudokuVerifier(SudokuTypeStructure structure) {
+        this.structure = structure;
+        plan = SolverPlan.getInstance(structure);
+        size = plan.size;
+        totalCells = plan.totalCells;
+        boxWidth = structure.boxWidth();
+        regular = size <= 64 && boxWidth > 0
+                && BoxTypeStructure.getInstance(
+                    boxWidth, structure.boxHeight()).equals(structure);
+        full = -1L >>> (64 - Math.min(size, 64));
+        grid = new int[totalCells];
+        masks = new long[regular ? 3 * size : (size + 63) >>> 6];
+    }
+
+    /**
+     * Returns {@code true} if the specified grid of symbol indexes is a
+     * solution.
+     *
+     * @param grid symbol indexes of all cells
+     * @return {@code true} if the grid is a solution
+     * @throws IllegalArgumentException if the length of the grid is not the
+     *     number of cells of the structure
+     */
+    public boolean isSolution(int[] grid) {
+        if (grid.length != totalCells)
+            throw new IllegalArgumentException(
+                    "grid.length != totalCells: " + grid.length
+                     + " != " + totalCells);
+        for (int i = 0; i < totalCells; ++i)
+            if (grid[i] < 0 || grid[i] >= size)
+                return false;
+        return verify(grid);
+    }
+
+    /**
+     * Returns {@code true} if the grid in the compact format at the
+     * specified offset of the array is a solution.
+     *
+     * @param grids array holding grids in the compact format
+     * @param offset index of the first cell of the grid
+     * @return {@code true} if the grid is a solution
+     */
+    public boolean isSolution(byte[] grids, int offset) {
+        for (int i = 0; i < totalCells; ++i) {
+            int symbol = grids[offset + i] & 0xFF;
+            if (symbol >= size)
+                return false;
+            grid[i] = symbol;
+        }
+        return verify(grid);
+    }
+
+    /**
+     * Returns {@code true} if the specified text, in the symbols of the
+     * specified type, is a solution.
+     *
+     * @param type Sudoku type to be referenced to interpret symbols
+     * @param text grid to be verified
+     * @return {@code true} if the grid is a solution
+     * @throws IllegalArgumentException if the type does not match with the
+     *     structure of this verifier
+     */
+    public boolean isSolution(SudokuType type, CharSequence text) {
+        if (type != lastType) {
+            if (!type.getStructure().equals(structure))
+                throw new IllegalArgumentException(
+                        "structure mismatch: " + type.getStructure());
+            SymbolSet symbols = type.getSymbols();
+            int maxChar = 0;
+            for (int s = 0; s < symbols.size(); ++s)
+                maxChar = Math.max(maxChar, symbols.get(s));
+            symbolIndexes = new int[maxChar + 1];
+            Arrays.fill(symbolIndexes, -1);
+            for (int s = 0; s < symbols.size(); ++s)
+                symbolIndexes[symbols.get(s)] = s;
+            lastType = type;
+        }
+        if (text.length() != totalCells)
+            return false;
+        for (int i = 0; i < totalCells; ++i) {
+            char c = text.charAt(i);
+            int symbol = c < symbolIndexes.length ? symbolIndexes[c] : -1;
+            if (symbol < 0)
+                return false;
+            grid[i] = symbol;
+        }
+        return verify(grid);
+    }
+
+    /**
+     * Verifies the specified number of consecutive grids in the compact
+     * format, starting at the specified offset of the array. Whether each
+     * grid is a solution is written into {@code results} unless it is
+     * {@code null}.
+     *
+     * @param grids array holding grids in the compact format
+     * @param offset index of the first cell of the first grid
+     * @param count number of grids to be verified
+     * @param results array into which the result of each grid is written,
+     *     or {@code null}
+     * @return the number of grids that are solutions
+     */
+    public int verify(byte[] grids, int offset, int count, boolean[] results) {
+        if (count < 0)
+            throw new IllegalArgumentException("count < 0: " + count);
+        int valid = 0;
+        for (int k = 0; k < count; ++k) {
+            boolean ok = isSolution(grids, offset + k * totalCells);
+            if (results != null)
+                results[k] = ok;
+            if (ok)
+                ++valid;
+        }
+        return valid;
+    }
+
+    /** Symbols are already known to be in range. */
+    private boolean verify(int[] grid) {
+        return regular ? verifyRegular(grid) : verifyGroups(grid);
+    }
+
+    private boolean verifyRegular(int[] grid) {
+        long[] masks = this.masks;
+        Arrays.fill(masks, 0L);
+        int boxHeight = size / boxWidth;
+        for (int r = 0, i = 0; r < size; ++r) {
+            int boxRow = 2 * size + r / boxHeight * boxHeight;
+            long row = 0;
+            for (int c = 0; c < size; ++c, ++i) {
+                long bit = 1L << grid[i];
+                row |= bit;
+                masks[size + c] |= bit;
+                masks[boxRow + c / boxWidth] |= bit;
+            }
+            if (row != full)
+                return false;
+        }
+        for (int k = size; k < masks.length; ++k)
+            if (masks[k] != full)
+                return false;
+        return true;
+    }
+
+    private boolean verifyGroups(int[] grid) {
+        int[] groupStart = plan.groupStart;
+        int[] groupCells = plan.groupCells;
+        long[] masks = this.masks;
+        for (int g = 0; g < plan.numCellGroups; ++g) {
+            int start = groupStart[g];
+            int end = groupStart[g + 1];
+            if (masks.length == 1) {
+                long mask = 0;
+                for (int m = start; m < end; ++m)
+                    mask |= 1L << grid[groupCells[m]];
+                if (Long.bitCount(mask) != end - start)
+                    return false;
+            } else {
+                Arrays.fill(masks, 0L);
+                int count = 0;
+                for (int m = start; m < end; ++m) {
+                    int symbol = grid[groupCells[m]];
+                    masks[symbol >>> 6] |= 1L << symbol;
+                }
+                for (int k = 0; k < masks.length; ++k)
+                    count += Long.bitCount(masks[k]);
+                if (count != end - start)
+                    return false;
+            }
+        }
+        return true;
+    }
+}
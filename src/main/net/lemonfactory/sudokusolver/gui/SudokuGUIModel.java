@@ -1,12 +1,12 @@
 package net.lemonfactory.sudokusolver.gui;
 
-import static net.lemonfactory.sudokusolver.SudokuTypes.BOX_9;
-
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import net.lemonfactory.sudokusolver.SudokuSolver;
+import net.lemonfactory.sudokusolver.SudokuSolverPool;
 import net.lemonfactory.sudokusolver.type.SudokuType;
 import net.lemonfactory.sudokusolver.type.SudokuTypeStructure;
 
@@ -16,17 +16,17 @@ import net.lemonfactory.sudokusolver.type.SudokuTypeStructure;
  */
 final class SudokuGUIModel {
 
-    private static final Map<SudokuTypeStructure, SudokuSolver> SOLVERS;
-
-    static {
-        SOLVERS = new WeakHashMap<SudokuTypeStructure, SudokuSolver>();
-        SOLVERS.put(BOX_9.getStructure(), new SudokuSolver(BOX_9.getStructure()));
-    }
+    private static final SudokuSolverPool SOLVERS =
+            new SudokuSolverPool(Integer.MAX_VALUE, 10, TimeUnit.MINUTES);
 
     private static SudokuSolver getSolver(SudokuTypeStructure structure) {
-        if (!SOLVERS.containsKey(structure))
-            SOLVERS.put(structure, new SudokuSolver(structure));
-        return SOLVERS.get(structure);
+        try {
+            return SOLVERS.borrow(structure);
+        } catch (InterruptedException e) {
+            // Never blocks, since the number of solvers is not limited
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
     }
 
     private List<ChangeListener> changeListeners;
@@ -41,6 +41,10 @@ final class SudokuGUIModel {
     private boolean changed;
     private boolean structureChanged;
     private ChangeEvent changeEvent;
+    private int runningThreads;
+    private boolean disposed;
+    private final List<SudokuSolver> replacedSolvers =
+            new ArrayList<SudokuSolver>();
 
     public SudokuGUIModel(SudokuType type, Runnable afterSolving) {
         this.changeListeners = new ArrayList<ChangeListener>();
@@ -67,7 +71,7 @@ final class SudokuGUIModel {
                 ? false : true;
         this.type = type;
         if (structureChanged) {
-            solver = getSolver(type.getStructure());
+            replaceSolver(type.getStructure());
             solved = false;
         }
         fireStateChanged();
@@ -105,7 +109,9 @@ final class SudokuGUIModel {
         anotherSolution = true;
         solutionNo = 0;
         fireStateChanged();
-        new Thread(new Runnable() {
+        final SudokuSolver solver = this.solver;
+        final SudokuType type = this.type;
+        startThread(new Runnable() {
             @Override
             public void run() {
                 solver.setPuzzle(type, puzzle);
@@ -120,7 +126,7 @@ final class SudokuGUIModel {
                         solveForAnotherSolution();
                 }
             }
-        }).start();
+        });
     }
 
     public void solveForAnotherSolution() {
@@ -128,7 +134,8 @@ final class SudokuGUIModel {
             return;
         solving = true;
         fireStateChanged();
-        new Thread(new Runnable() {
+        final SudokuSolver solver = this.solver;
+        startThread(new Runnable() {
             @Override
             public void run() {
                 anotherSolution = solver.solvePuzzleForAnotherSolution();
@@ -141,9 +148,66 @@ final class SudokuGUIModel {
                 } else
                     anotherSolution = true;
             }
+        });
+    }
+
+    /**
+     * Returns the solver to the pool and borrows one for the specified
+     * structure. If a thread is running, the old solver may still be in use
+     * after an abort, so it is released when the threads end.
+     */
+    private synchronized void replaceSolver(SudokuTypeStructure structure) {
+        if (runningThreads > 0)
+            replacedSolvers.add(solver);
+        else
+            SOLVERS.release(solver);
+        solver = getSolver(structure);
+    }
+
+    /**
+     * Runs the task in a new thread, keeping the solvers borrowed until the
+     * thread ends even if they are replaced or this model is disposed in the
+     * meantime.
+     */
+    private synchronized void startThread(final Runnable task) {
+        if (disposed)
+            return;
+        ++runningThreads;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    threadEnded();
+                }
+            }
         }).start();
     }
 
+    private synchronized void threadEnded() {
+        if (--runningThreads > 0)
+            return;
+        for (SudokuSolver s : replacedSolvers)
+            SOLVERS.release(s);
+        replacedSolvers.clear();
+        if (disposed)
+            SOLVERS.release(solver);
+    }
+
+    /**
+     * Aborts solving and releases the solver of this model. The model must
+     * not be used after it is disposed.
+     */
+    public synchronized void dispose() {
+        if (disposed)
+            return;
+        disposed = true;
+        solver.abort();
+        if (runningThreads == 0)
+            SOLVERS.release(solver);
+    }
+
     public boolean isSolving() {
         return solving;
     }
@@ -223,6 +223,12 @@ public final class SudokuGUIView {
         TypeMenuItemGroup.lastSelected(0);
 
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                model.dispose();
+            }
+        });
         frame.setLocationByPlatform(true);
         frame.setMinimumSize(MINIMUM_SIZE);
         frame.setPreferredSize(getProperSize(model.getSudokuType()));
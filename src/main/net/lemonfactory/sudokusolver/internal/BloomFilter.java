@@ -0,0 +1,104 @@
+package net.lemonfactory.sudokusolver.internal;
+
+/**
+ * Bloom filter of 64-bit hashes. The bit positions are derived from the hash
+ * by double hashing. Thread-safety is not guaranteed.
+ *
+ * @author Choongmin Lee
+ */
+public final class BloomFilter {
+
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+
+    /**
+     * Creates a Bloom filter sized for the specified number of insertions and
+     * false positive rate.
+     *
+     * @param expectedInsertions expected number of insertions
+     * @param falsePositiveRate desired false positive rate when the expected
+     *     number of hashes has been inserted
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1)
+            throw new IllegalArgumentException(
+                    "expectedInsertions < 1: " + expectedInsertions);
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+            throw new IllegalArgumentException(
+                    "falsePositiveRate: " + falsePositiveRate);
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(
+                -expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        long words = Math.max(1, (m + 63) >>> 6);
+        if (words > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("too many bits: " + m);
+        this.bits = new long[(int) words];
+        this.numBits = words << 6;
+        this.numHashes = Math.max(1, (int) Math.round(
+                (double) numBits / expectedInsertions * ln2));
+    }
+
+    public long numBits() {
+        return numBits;
+    }
+
+    public int numHashes() {
+        return numHashes;
+    }
+
+    /**
+     * Adds the specified hash. Returns {@code true} if it might have been
+     * added before, that is, if all of its bits were already set.
+     *
+     * @param hash hash to be added
+     * @return {@code true} if all bits of the hash were already set
+     */
+    public boolean add(long hash) {
+        boolean present = true;
+        long h1 = mix(hash);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < numHashes; ++i) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                present = false;
+            }
+        }
+        return present;
+    }
+
+    /**
+     * Returns {@code true} if the specified hash might have been added, or
+     * {@code false} if it has definitely not been added.
+     *
+     * @param hash hash to be tested
+     * @return {@code true} if the hash might have been added
+     */
+    public boolean mightContain(long hash) {
+        long h1 = mix(hash);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < numHashes; ++i) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            if ((bits[(int) (bit >>> 6)] & 1L << bit) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < bits.length; ++i)
+            bits[i] = 0;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,190 @@
+package net.lemonfactory.sudokusolver.internal;
+
+import java.util.Arrays;
+
+/**
+ * Bit mask implementation of the {@link SimpleSet} interface, which holds
+ * elements in an array of {@code long} words, so its capacity is not limited
+ * to 64. Set operations are done word by word, and the cardinality is kept
+ * up to date. Thread-safety is not guaranteed.
+ *
+ * @author Choongmin Lee
+ */
+public final class LongArraySimpleSet implements SimpleSet {
+
+    private final long[] words;
+    private final int capacity;
+    private final long lastWordMask;
+    private int cardinality;
+    private int cursor;
+
+    public LongArraySimpleSet(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity < 1: " + capacity);
+        this.words = new long[(capacity + 63) >>> 6];
+        this.capacity = capacity;
+        this.lastWordMask = -1L >>> (-capacity & 63);
+        this.cardinality = 0;
+        this.cursor = -1;
+    }
+
+    @Override
+    public void add(int e) {
+        checkElement(e);
+        long bit = 1L << e;
+        int i = e >>> 6;
+        if ((words[i] & bit) == 0) {
+            words[i] |= bit;
+            ++cardinality;
+        }
+    }
+
+    @Override
+    public void addAll(SimpleSet s) {
+        if (s instanceof LongArraySimpleSet) {
+            long[] other = ((LongArraySimpleSet) s).words;
+            int n = Math.min(words.length, other.length);
+            int c = 0;
+            for (int i = 0; i < n; ++i) {
+                long w = words[i] | other[i];
+                if (i == words.length - 1)
+                    w &= lastWordMask;
+                words[i] = w;
+                c += Long.bitCount(w);
+            }
+            for (int i = n; i < words.length; ++i)
+                c += Long.bitCount(words[i]);
+            cardinality = c;
+        } else {
+            for (int i = 0, n = Math.min(capacity, s.capacity()); i < n; ++i)
+                if (s.contains(i))
+                    add(i);
+        }
+    }
+
+    @Override
+    public void remove(int e) {
+        checkElement(e);
+        long bit = 1L << e;
+        int i = e >>> 6;
+        if ((words[i] & bit) != 0) {
+            words[i] &= ~bit;
+            --cardinality;
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(words, 0L);
+        cardinality = 0;
+        cursor = -1;
+    }
+
+    @Override
+    public void complement() {
+        for (int i = 0; i < words.length; ++i)
+            words[i] = ~words[i];
+        words[words.length - 1] &= lastWordMask;
+        cardinality = capacity - cardinality;
+    }
+
+    @Override
+    public boolean contains(int e) {
+        checkElement(e);
+        return (words[e >>> 6] & (1L << e)) != 0;
+    }
+
+    @Override
+    public int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int next() {
+        if (cardinality == 0)
+            return -1;
+        int e = nextSetBit(cursor + 1);
+        if (e == -1)
+            e = nextSetBit(0);
+        cursor = e;
+        return e;
+    }
+
+    /**
+     * Throws {@code ArrayIndexOutOfBoundsException}, as the other
+     * implementations do, if the element is not less than the capacity;
+     * otherwise it would be set in the unused bits of the last word.
+     */
+    private void checkElement(int e) {
+        if (e < 0 || e >= capacity)
+            throw new ArrayIndexOutOfBoundsException(e);
+    }
+
+    private int nextSetBit(int from) {
+        if (from >= capacity)
+            return -1;
+        int i = from >>> 6;
+        long w = words[i] & (-1L << from);
+        while (w == 0) {
+            if (++i == words.length)
+                return -1;
+            w = words[i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(w);
+    }
+
+    @Override
+    public void withdrawCursor() {
+        if (cursor >= 0)
+            --cursor;
+    }
+
+    @Override
+    public void resetCursor() {
+        cursor = -1;
+    }
+
+    /**
+     * Copies the words of this set into the specified array, starting at the
+     * specified offset. Bit {@code e % 64} of word {@code e / 64} is set if
+     * {@code e} is in this set.
+     *
+     * @param dest array to which the words are copied
+     * @param offset index of {@code dest} at which the first word is copied
+     */
+    public void getWords(long[] dest, int offset) {
+        System.arraycopy(words, 0, dest, offset, words.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof LongArraySimpleSet) {
+            LongArraySimpleSet s = (LongArraySimpleSet) o;
+            return capacity == s.capacity
+                     && cardinality == s.cardinality
+                     && Arrays.equals(words, s.words);
+        }
+        if (!(o instanceof SimpleSet))
+            return false;
+        SimpleSet s = (SimpleSet) o;
+        if (capacity != s.capacity() || cardinality != s.cardinality())
+            return false;
+        for (int i = 0; i < capacity; ++i)
+            if (contains(i) != s.contains(i))
+                return false;
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 107;
+        result = 79 * result + Arrays.hashCode(words);
+        result = 79 * result + capacity;
+        return result;
+    }
+}
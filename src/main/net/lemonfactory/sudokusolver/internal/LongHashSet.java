@@ -0,0 +1,113 @@
+package net.lemonfactory.sudokusolver.internal;
+
+/**
+ * Set of {@code long} values with fixed capacity, implemented as an open
+ * addressing hash table with linear probing. No object is allocated after
+ * creation. Thread-safety is not guaranteed.
+ *
+ * @author Choongmin Lee
+ */
+public final class LongHashSet {
+
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+
+    /**
+     * The maximum capacity of a set, which keeps the table at most three
+     * quarters full.
+     */
+    public static final int MAX_CAPACITY = MAX_TABLE_SIZE / 4 * 3;
+
+    private final long[] table;
+    private final int mask;
+    private final int capacity;
+    private boolean containsZero;  // zero marks an empty slot in the table
+    private int size;
+
+    /**
+     * Creates a set which can hold up to the specified number of values.
+     *
+     * @param capacity maximum number of values
+     * @throws IllegalArgumentException if the capacity is less than 1 or
+     *     greater than {@link #MAX_CAPACITY}
+     */
+    public LongHashSet(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity < 1: " + capacity);
+        if (capacity > MAX_CAPACITY)
+            throw new IllegalArgumentException(
+                    "capacity > " + MAX_CAPACITY + ": " + capacity);
+        long minTableSize = (long) capacity * 4 / 3 + 1;
+        int tableSize = 2;
+        while (tableSize < minTableSize)
+            tableSize <<= 1;
+        this.table = new long[tableSize];
+        this.mask = tableSize - 1;
+        this.capacity = capacity;
+        this.size = 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public boolean contains(long e) {
+        if (e == 0)
+            return containsZero;
+        for (int i = slot(e); ; i = (i + 1) & mask) {
+            long v = table[i];
+            if (v == e)
+                return true;
+            if (v == 0)
+                return false;
+        }
+    }
+
+    /**
+     * Adds the specified value. Returns {@code true} if it was not in this
+     * set. It throws {@link IllegalStateException} if this set is full and
+     * does not contain the value.
+     *
+     * @param e value to be added
+     * @return {@code true} if the value was not in this set
+     */
+    public boolean add(long e) {
+        if (e == 0) {
+            if (containsZero)
+                return false;
+            if (size == capacity)
+                throw new IllegalStateException("set is full");
+            containsZero = true;
+            ++size;
+            return true;
+        }
+        int i = slot(e);
+        for (long v; (v = table[i]) != 0; i = (i + 1) & mask)
+            if (v == e)
+                return false;
+        if (size == capacity)
+            throw new IllegalStateException("set is full");
+        table[i] = e;
+        ++size;
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < table.length; ++i)
+            table[i] = 0;
+        containsZero = false;
+        size = 0;
+    }
+
+    private int slot(long e) {
+        long h = e * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
@@ -0,0 +1,39 @@
+package net.lemonfactory.sudokusolver.internal;
+
+/**
+ * <p>
+ * Kernel of singles propagation for one topology: it removes an assigned
+ * symbol from the neighbors of a cell, where the candidates of each cell are
+ * a bit mask in one {@code long}. Implementations are created by
+ * {@link PropagationKernels}, either generic ones that loop over neighbor
+ * tables or ones generated for a topology with the tables as constants.
+ * </p>
+ * <p>
+ * Implementations are stateless and thread-safe.
+ * </p>
+ *
+ * @author Choongmin Lee
+ * @see PropagationKernels
+ */
+public interface PropagationKernel {
+
+    /**
+     * Removes the specified symbol bit from the candidates of the neighbors
+     * of the specified cell. A neighbor is assigned if its value in
+     * {@code grid} is not negative. Blank neighbors left with one candidate
+     * are written to {@code singles}, whose length must be at least the
+     * number of neighbors of the cell.
+     *
+     * @param cell index of the assigned cell
+     * @param bit bit of the assigned symbol
+     * @param candidates candidates of all cells
+     * @param grid assigned symbols of all cells, or -1 for blank cells
+     * @param singles array to which the neighbors left with one candidate
+     *     are written
+     * @return the number of neighbors written to {@code singles}, or -1 if
+     *     a neighbor is assigned the same symbol or is left with no
+     *     candidates
+     */
+    public int eliminate(
+            int cell, long bit, long[] candidates, int[] grid, int[] singles);
+}
@@ -0,0 +1,239 @@
+package net.lemonfactory.sudokusolver.internal;
+
+import java.io.*;
+import java.net.URI;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.tools.*;
+
+/**
+ * <p>
+ * This class consists of factory methods of {@link PropagationKernel}s.
+ * </p>
+ * <p>
+ * A specialized kernel is generated for one neighbor table at runtime: its
+ * Java source, with one method per cell whose neighbors are unrolled into
+ * constant indexes, is compiled in memory by the system Java compiler and
+ * loaded by its own class loader. As each cell has its own small method,
+ * the JIT compiler can inline and optimize it regardless of the number of
+ * cells. Generating a kernel takes a while, so callers should cache it.
+ * When no compiler is available, as on a JRE, or compilation fails for any
+ * reason, {@link #compile(int[], int[])} returns {@code null}.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @author Choongmin Lee
+ */
+public final class PropagationKernels {
+
+    /** Topologies with more cells are not compiled. */
+    public static final int MAX_COMPILED_CELLS = 1024;
+
+    private static final String PACKAGE =
+            PropagationKernel.class.getPackage().getName();
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    /**
+     * Utility class.
+     */
+    private PropagationKernels() {}
+
+    /**
+     * Returns a kernel that loops over the specified neighbor table, in the
+     * compressed form of
+     * {@link net.lemonfactory.sudokusolver.type.SudokuTypeStructure#getNeighborCellOffsets()}.
+     *
+     * @param neighborStart offsets of the neighbor table
+     * @param neighbors the neighbor table
+     * @return a generic kernel for the table
+     */
+    public static PropagationKernel generic(
+            int[] neighborStart, int[] neighbors) {
+        return new GenericKernel(neighborStart, neighbors);
+    }
+
+    /**
+     * Generates and compiles a kernel specialized for the specified neighbor
+     * table. Returns {@code null} if it cannot be compiled.
+     *
+     * @param neighborStart offsets of the neighbor table
+     * @param neighbors the neighbor table
+     * @return a specialized kernel for the table, or {@code null} if it
+     *     cannot be compiled
+     */
+    public static PropagationKernel compile(
+            int[] neighborStart, int[] neighbors) {
+        int totalCells = neighborStart.length - 1;
+        if (totalCells > MAX_COMPILED_CELLS)
+            return null;
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+            return null;
+        String simpleName = "GeneratedKernel" + COUNTER.incrementAndGet();
+        String name = PACKAGE + "." + simpleName;
+        String source = generateSource(simpleName, neighborStart, neighbors);
+        try {
+            MemoryFileManager fileManager = new MemoryFileManager(
+                    compiler.getStandardFileManager(null, null, null));
+            List<String> options = Arrays.asList(
+                    "-classpath", getClassPath(), "-g:none", "-nowarn");
+            JavaFileObject unit = new SourceFile(name, source);
+            Boolean ok = compiler.getTask(
+                    null, fileManager, new DiagnosticCollector<JavaFileObject>(),
+                    options, null, Collections.singletonList(unit)).call();
+            if (ok == null || !ok || fileManager.bytes == null)
+                return null;
+            Class<?> c = new KernelLoader().define(name, fileManager.bytes);
+            return (PropagationKernel) c.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    static String generateSource(
+            String simpleName, int[] neighborStart, int[] neighbors) {
+        int totalCells = neighborStart.length - 1;
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(PACKAGE).append(";\n\n");
+        sb.append("public final class ").append(simpleName)
+          .append(" implements PropagationKernel {\n\n");
+        sb.append("    public int eliminate(int cell, long bit, long[] candidates,"
+                + " int[] grid, int[] singles) {\n");
+        sb.append("        switch (cell) {\n");
+        for (int i = 0; i < totalCells; ++i)
+            sb.append("        case ").append(i).append(": return e").append(i)
+              .append("(bit, candidates, grid, singles);\n");
+        sb.append("        default: throw new IllegalArgumentException("
+                + "\"cell out of range: \" + cell);\n");
+        sb.append("        }\n    }\n");
+        for (int i = 0; i < totalCells; ++i) {
+            sb.append("\n    private static int e").append(i)
+              .append("(long bit, long[] candidates, int[] grid,"
+                      + " int[] singles) {\n");
+            sb.append("        int n = 0;\n        long c;\n");
+            for (int k = neighborStart[i]; k < neighborStart[i + 1]; ++k) {
+                int j = neighbors[k];
+                sb.append("        c = candidates[").append(j).append("];\n");
+                sb.append("        if ((c & bit) != 0) {\n");
+                sb.append("            if (grid[").append(j)
+                  .append("] >= 0 || (c &= ~bit) == 0) return -1;\n");
+                sb.append("            candidates[").append(j).append("] = c;\n");
+                sb.append("            if ((c & (c - 1)) == 0) singles[n++] = ")
+                  .append(j).append(";\n");
+                sb.append("        }\n");
+            }
+            sb.append("        return n;\n    }\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static String getClassPath() {
+        String classPath = System.getProperty("java.class.path", "");
+        CodeSource codeSource =
+                PropagationKernel.class.getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null) {
+            try {
+                String path = new File(codeSource.getLocation().toURI()).getPath();
+                classPath = path + File.pathSeparator + classPath;
+            } catch (Exception e) {
+                // keep the class path of the system
+            }
+        }
+        return classPath;
+    }
+
+    private static final class GenericKernel implements PropagationKernel {
+
+        private final int[] neighborStart;
+        private final int[] neighbors;
+
+        GenericKernel(int[] neighborStart, int[] neighbors) {
+            this.neighborStart = neighborStart;
+            this.neighbors = neighbors;
+        }
+
+        @Override
+        public int eliminate(
+                int cell, long bit, long[] candidates, int[] grid,
+                int[] singles) {
+            int n = 0;
+            for (int k = neighborStart[cell], end = neighborStart[cell + 1];
+                    k < end; ++k) {
+                int j = neighbors[k];
+                long c = candidates[j];
+                if ((c & bit) != 0) {
+                    if (grid[j] >= 0 || (c &= ~bit) == 0)
+                        return -1;
+                    candidates[j] = c;
+                    if ((c & (c - 1)) == 0)
+                        singles[n++] = j;
+                }
+            }
+            return n;
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+
+        private final String source;
+
+        SourceFile(String name, String source) {
+            super(URI.create("string:///" + name.replace('.', '/')
+                    + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    /** Keeps the compiled class in memory; only one class is expected. */
+    private static final class MemoryFileManager
+            extends ForwardingJavaFileManager<JavaFileManager> {
+
+        byte[] bytes;
+
+        MemoryFileManager(JavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(
+                Location location, String className, JavaFileObject.Kind kind,
+                FileObject sibling) {
+            return new SimpleJavaFileObject(
+                    URI.create("bytes:///" + className.replace('.', '/')
+                        + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() throws IOException {
+                            super.close();
+                            bytes = toByteArray();
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    private static final class KernelLoader extends ClassLoader {
+
+        KernelLoader() {
+            super(PropagationKernel.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
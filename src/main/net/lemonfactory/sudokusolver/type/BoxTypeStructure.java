@@ -104,6 +104,41 @@ public final class BoxTypeStructure implements SudokuTypeStructure {
         return backend.getNumIntersections(cellGroupIndex1, cellGroupIndex2);
     }
 
+    @Override
+    public int[] getIntersectingCellGroupPairs() {
+        return backend.getIntersectingCellGroupPairs();
+    }
+
+    @Override
+    public int[] getNeighborCellOffsets() {
+        return backend.getNeighborCellOffsets();
+    }
+
+    @Override
+    public int[] getNeighborCellTable() {
+        return backend.getNeighborCellTable();
+    }
+
+    @Override
+    public int[] getCellGroupOffsets() {
+        return backend.getCellGroupOffsets();
+    }
+
+    @Override
+    public int[] getCellGroupTable() {
+        return backend.getCellGroupTable();
+    }
+
+    @Override
+    public int[] getCellGroupIndexOffsets() {
+        return backend.getCellGroupIndexOffsets();
+    }
+
+    @Override
+    public int[] getCellGroupIndexTable() {
+        return backend.getCellGroupIndexTable();
+    }
+
     @Override
     public Color getCellGroupColor(int cellGroupIndex) {
         return backend.getCellGroupColor(cellGroupIndex);
@@ -111,7 +146,7 @@ public final class BoxTypeStructure implements SudokuTypeStructure {
 
     @Override
     public boolean equals(Object o) {
-        return o instanceof BoxTypeStructure
+        return o == this || o instanceof BoxTypeStructure
                  && backend.equals(((BoxTypeStructure) o).backend);
     }
 
@@ -4,61 +4,74 @@ import java.awt.Color;
 import java.util.*;
 
 /**
+ * General structure made of arbitrary cell groups. Only the cell groups are
+ * computed when a structure is built; the tables derived from them, such as
+ * neighbor cells and intersections, are computed on first use, or read from
+ * a snapshot (see {@link SudokuTypeStructures#readSnapshot}).
  *
  * @author Choongmin Lee
  */
 public class GeneralSudokuTypeStructure implements SudokuTypeStructure {
 
-    private static final Comparator<ColoredCellGroup> CCGCOMP;
-
-    static {
-        CCGCOMP = new Comparator<ColoredCellGroup>() {
-            @Override
-            public int compare(ColoredCellGroup o1, ColoredCellGroup o2) {
-                int[] i1 = convert(o1.getCellGroup());
-                int[] i2 = convert(o1.getCellGroup());
-                for (int i = 0; i < i1.length && i < i2.length; ++i) {
-                    int j = i1[i] - i2[i];
-                    if (j != 0)
-                        return j;
-                }
-                return i1.length - i2.length;
-            }
-        };
-    }
-
     private final int size;
     private final int boxWidth;
     private final int boxHeight;
     private final int totalCells;
 
     private final int[][] cellGroups;          // index: cell group index
-    private final int[][] cellGroupIndexes;    // index: cell
-    private final int[][] neighborCellGroups;  // index: cell
-    private final int[][] intersections;       // index: two cell group indexes
-    private final int[][][] cellGroupDiffs;
-
     private final Color[] cellGroupColors;
 
+    private final int hashCode;
+
+    private volatile Tables tables;
+
     private GeneralSudokuTypeStructure(
             int size,
             int boxWidth,
             int boxHeight,
-            List<ColoredCellGroup> coloredCellGroups) {
+            int totalCells,
+            int[][] cellGroups,
+            Color[] cellGroupColors) {
         this.size = size;
         this.boxWidth = boxWidth;
         this.boxHeight = boxHeight;
-        this.totalCells = countCells(coloredCellGroups);
+        this.totalCells = totalCells;
+        this.cellGroups = cellGroups;
+        this.cellGroupColors = cellGroupColors;
 
-        // Simlify equals() and hashCode()
-        Collections.sort(coloredCellGroups, CCGCOMP);
-        this.cellGroups = getCellGroups(coloredCellGroups);
-        this.cellGroupColors = getCellGroupColors(coloredCellGroups);
+        int result = 23;
+        result = 41 * result + size;
+        result = 41 * result + Arrays.deepHashCode(cellGroups);
+        this.hashCode = result;
+    }
 
-        this.cellGroupIndexes = evalCellGroupIndexes();
-        this.neighborCellGroups = evalNeighborCellGroups();
-        this.intersections = evalIntersections();
-        this.cellGroupDiffs = evalCellGroupDiffs();
+    /* For snapshots; the tables are not validated. */
+    static GeneralSudokuTypeStructure fromTables(
+            int size,
+            int boxWidth,
+            int boxHeight,
+            int[][] cellGroups,
+            Color[] cellGroupColors,
+            int[][] cellGroupIndexes,
+            int[][] neighborCellGroups,
+            int[][] partners,
+            int[][] intersections,
+            int[][][] cellGroupDiffs) {
+        GeneralSudokuTypeStructure s = new GeneralSudokuTypeStructure(
+                size,
+                boxWidth,
+                boxHeight,
+                cellGroupIndexes.length,
+                cellGroups,
+                cellGroupColors);
+        s.tables = new Tables(
+                cellGroups,
+                cellGroupIndexes,
+                neighborCellGroups,
+                partners,
+                intersections,
+                cellGroupDiffs);
+        return s;
     }
 
     public static Builder getBuilder(int size) {
@@ -100,7 +113,7 @@ public class GeneralSudokuTypeStructure implements SudokuTypeStructure {
 
     @Override
     public int[] getCellGroupIndexes(int cell) {
-        return cellGroupIndexes[cell];
+        return tables().cellGroupIndexes[cell];
     }
 
     @Override
@@ -110,175 +123,101 @@ public class GeneralSudokuTypeStructure implements SudokuTypeStructure {
 
     @Override
     public int[] getCellGroupDiff(int cgIndex1, int cgIndex2) {
-        return cellGroupDiffs[cgIndex1][cgIndex2];
+        Tables t = tables();
+        int k = Arrays.binarySearch(t.partners[cgIndex1], cgIndex2);
+        return k < 0 ? cellGroups[cgIndex1] : t.cellGroupDiffs[cgIndex1][k];
     }
 
     @Override
     public int[] getNeighborCells(int cell) {
-        return neighborCellGroups[cell];
+        return tables().neighborCellGroups[cell];
     }
 
     @Override
     public int getNumIntersections(int cellGroupIndex1, int cellGroupIndex2) {
-        return intersections[cellGroupIndex1][cellGroupIndex2];
+        Tables t = tables();
+        int k = Arrays.binarySearch(t.partners[cellGroupIndex1], cellGroupIndex2);
+        return k < 0 ? 0 : t.intersections[cellGroupIndex1][k];
     }
 
     @Override
-    public Color getCellGroupColor(int cellGroupIndex) {
-        return cellGroupColors[cellGroupIndex];
+    public int[] getIntersectingCellGroupPairs() {
+        return tables().intersectingPairs;
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (o instanceof GeneralSudokuTypeStructure) {
-            GeneralSudokuTypeStructure s = (GeneralSudokuTypeStructure) o;
-            return size == s.size && Arrays.deepEquals(cellGroups, s.cellGroups);
-        } else {
-            return false;
-        }
+    public int[] getNeighborCellOffsets() {
+        return tables().neighborCellOffsets;
     }
 
     @Override
-    public int hashCode() {
-        int result = 23;
-        result = 41 * result + size;
-        result = 41 * result + Arrays.deepHashCode(cellGroups);
-        return result;
+    public int[] getNeighborCellTable() {
+        return tables().neighborCellTable;
     }
 
-    private static int[] convert(TreeSet<Integer> from) {
-        int[] to = new int[from.size()];
-        int i = 0;
-        for (Integer j : from)
-            to[i++] = j.intValue();
-        return to;
-    }
-
-    private int countCells(List<ColoredCellGroup> cellGroups) {
-        Set<Integer> set = new HashSet<Integer>();
-        for (ColoredCellGroup cellGroup : cellGroups)
-            set.addAll(cellGroup.getCellGroup());
-        return set.size();
+    @Override
+    public int[] getCellGroupOffsets() {
+        return tables().cellGroupOffsets;
     }
 
-    private int[][] getCellGroups(List<ColoredCellGroup> cellGroupList) {
-        int[][] cellGroups = new int[cellGroupList.size()][size];
-        for (int i = 0; i < cellGroupList.size(); ++i)
-            cellGroups[i] = convert(cellGroupList.get(i).getCellGroup());
-        return cellGroups;
+    @Override
+    public int[] getCellGroupTable() {
+        return tables().cellGroupTable;
     }
 
-    private Color[] getCellGroupColors(List<ColoredCellGroup> cellGroupList) {
-        Color[] colors = new Color[cellGroupList.size()];
-        for (int i = 0; i < cellGroupList.size(); ++i)
-            colors[i] = cellGroupList.get(i).getColor();
-        return colors;
+    @Override
+    public int[] getCellGroupIndexOffsets() {
+        return tables().cellGroupIndexOffsets;
     }
 
-    private int[][] evalCellGroupIndexes() {
-        Map<Integer, List<Integer>> map = new HashMap<Integer, List<Integer>>();
-        for (int cgIndex = 0; cgIndex < cellGroups.length; ++cgIndex)
-            for (int cell: cellGroups[cgIndex])
-                if (map.containsKey(cell)) {
-                    map.get(cell).add(cgIndex);
-                } else {
-                    List<Integer> cellGroup = new ArrayList<Integer>();
-                    cellGroup.add(cgIndex);
-                    map.put(cell, cellGroup);
-                }
-        int[][] cellGroupIndexes = new int[totalCells][];
-        for (int cell = 0; cell < totalCells; ++cell)
-            cellGroupIndexes[cell] = toArray(map.get(cell));
-        return cellGroupIndexes;
+    @Override
+    public int[] getCellGroupIndexTable() {
+        return tables().cellGroupIndexTable;
     }
 
-    private int[] toArray(Collection<Integer> collection) {
-        if (collection == null)
-            return new int[0];
-        int[] array = new int[collection.size()];
-        int i = 0;
-        for (int e : collection)
-            array[i++] = e;
-        return array;
+    @Override
+    public Color getCellGroupColor(int cellGroupIndex) {
+        return cellGroupColors[cellGroupIndex];
     }
 
-    private int[][] evalNeighborCellGroups() {
-        int[][] neighborCellGroups = new int[totalCells][];
-        TreeSet<Integer> set = new TreeSet<Integer>();
-        for (int cell = 0; cell < totalCells; ++cell) {
-            set.clear();
-            for (int cellGroupIndex : cellGroupIndexes[cell])
-                for (int otherCell : cellGroups[cellGroupIndex])
-                    set.add(otherCell);
-            set.remove(cell);
-            neighborCellGroups[cell] = toArray(set);
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        } else if (o instanceof GeneralSudokuTypeStructure) {
+            GeneralSudokuTypeStructure s = (GeneralSudokuTypeStructure) o;
+            return hashCode == s.hashCode
+                     && size == s.size
+                     && Arrays.deepEquals(cellGroups, s.cellGroups);
+        } else {
+            return false;
         }
-        return neighborCellGroups;
     }
 
-    private int[][] evalIntersections() {
-        int[][] intersections = new int[cellGroups.length][cellGroups.length];
-        for (int cgIndex1 = 0; cgIndex1 < cellGroups.length; ++cgIndex1)
-            for (int cgIndex2 = 0; cgIndex2 < cellGroups.length; ++cgIndex2)
-                intersections[cgIndex1][cgIndex2] = intersect(
-                        cellGroups[cgIndex1],
-                        cellGroups[cgIndex2]);
-        return intersections;
-    }
-
-    // Precondition: a and b are sorted in ascending order
-    private int intersect(int[] a, int[] b) {
-        int result = 0;
-        int i = 0;
-        int j = 0;
-        while (i < a.length && j < b.length) {
-            if (a[i] == b[j]) {
-                ++result;
-                ++i;
-                ++j;
-            } else if (a[i] < b[j]) {
-                ++i;
-            } else {
-                ++j;
-            }
-        }
-        return result;
+    @Override
+    public int hashCode() {
+        return hashCode;
     }
 
-    private int[][][] evalCellGroupDiffs() {
-        int[][][] cellGroupDiffs = new int[cellGroups.length][cellGroups.length][];
-        for (int cgIndex1 = 0; cgIndex1 < cellGroups.length; ++cgIndex1)
-            for (int cgIndex2 = 0; cgIndex2 < cellGroups.length; ++cgIndex2)
-                cellGroupDiffs[cgIndex1][cgIndex2] = diff(cellGroups[cgIndex1],
-                        cellGroups[cgIndex2]);
-        return cellGroupDiffs;
+    /** Returns {@code true} if the derived tables have been built. */
+    boolean hasTables() {
+        return tables != null;
     }
 
-    private int[] diff(int[] a, int[] b) {
-        int[] diff = new int[a.length];
-        int i = 0;
-        int j = 0;
-        int k = 0;
-        while (i < a.length && j < b.length) {
-            if (a[i] < b[j]) {
-                diff[k++] = a[i++];
-            } else if (a[i] > b[j]) {
-                ++j;
-            } else {
-                ++i;
-                ++j;
-            }
-        }
-        while (i < a.length)
-            diff[k++] = a[i++];
-        return Arrays.copyOf(diff, k);
+    /* Tables are immutable, so a race on computing them only wastes time. */
+    private Tables tables() {
+        Tables t = tables;
+        if (t == null)
+            tables = t = new Tables(totalCells, cellGroups);
+        return t;
     }
 
     public static class Builder {
 
         private final int size;
-        private final List<ColoredCellGroup> cellGroups;
-        private final Set<Integer> allCells;
+        private final List<int[]> cellGroups;
+        private final List<Color> cellGroupColors;
+        private final BitSet allCells;
 
         private int bw;
         private int bh;
@@ -287,8 +226,9 @@ public class GeneralSudokuTypeStructure implements SudokuTypeStructure {
             if (size < 1)
                 throw new IllegalArgumentException("size < 1: " + size);
             this.size = size;
-            this.cellGroups = new ArrayList<ColoredCellGroup>();
-            this.allCells = new HashSet<Integer>();
+            this.cellGroups = new ArrayList<int[]>();
+            this.cellGroupColors = new ArrayList<Color>();
+            this.allCells = new BitSet();
         }
 
         public Builder setBox(int boxWidth, int boxHeight) {
@@ -302,43 +242,263 @@ public class GeneralSudokuTypeStructure implements SudokuTypeStructure {
         }
 
         public Builder addCellGroup(Color cellGroupColor, int... cellGroup) {
-            TreeSet<Integer> s = new TreeSet<Integer>();
-            for (int c : cellGroup)
-                s.add(c);
-            if (s.size() != size)
+            int[] s = cellGroup.clone();
+            Arrays.sort(s);
+            int n = 0;
+            for (int i = 0; i < s.length; ++i)
+                if (i == 0 || s[i] != s[i - 1])
+                    s[n++] = s[i];
+            if (n != size)
                 throw new IllegalArgumentException(
                         "(cellGroup as Set).size() != size: "
-                         + "(cellGroup as Set).size() = " + s.size()
+                         + "(cellGroup as Set).size() = " + n
                          + ", size = " + size);
-            cellGroups.add(new ColoredCellGroup(s, cellGroupColor));
-            allCells.addAll(s);
+            if (s[0] < 0)
+                throw new IllegalArgumentException("cell < 0: " + s[0]);
+            s = Arrays.copyOf(s, n);
+            cellGroups.add(s);
+            cellGroupColors.add(cellGroupColor);
+            for (int c : s)
+                allCells.set(c);
             return this;
         }
 
         public GeneralSudokuTypeStructure build() {
-            for (int i = 0; i < allCells.size(); ++i)
-                if (!allCells.contains(i))
-                    throw new IllegalStateException("cell hole at " + i);
-            return new GeneralSudokuTypeStructure(size, bw, bh, cellGroups);
+            int totalCells = allCells.cardinality();
+            int hole = allCells.nextClearBit(0);
+            if (hole < totalCells)
+                throw new IllegalStateException("cell hole at " + hole);
+            return new GeneralSudokuTypeStructure(
+                    size,
+                    bw,
+                    bh,
+                    totalCells,
+                    cellGroups.toArray(new int[cellGroups.size()][]),
+                    cellGroupColors.toArray(new Color[cellGroupColors.size()]));
         }
     }
 
-    private static class ColoredCellGroup {
+    private static final class Tables {
+
+        final int totalCells;
+        final int[][] cellGroups;
+        final int[][] cellGroupIndexes;    // index: cell
+        final int[][] neighborCellGroups;  // index: cell
+
+        /* Only pairs of cell groups sharing a cell are stored. partners[g] is
+           the sorted indexes of the cell groups intersecting g, including g
+           itself; intersections[g][k] and cellGroupDiffs[g][k] are for the
+           pair of g and partners[g][k]. */
+        final int[][] partners;            // index: cell group index
+        final int[][] intersections;
+        final int[][][] cellGroupDiffs;
+        final int[] intersectingPairs;
+
+        /* Compressed forms of cellGroups, cellGroupIndexes and
+           neighborCellGroups; row i is at [offsets[i], offsets[i + 1]). */
+        final int[] cellGroupOffsets;
+        final int[] cellGroupTable;
+        final int[] cellGroupIndexOffsets;
+        final int[] cellGroupIndexTable;
+        final int[] neighborCellOffsets;
+        final int[] neighborCellTable;
+
+        Tables(int totalCells, int[][] cellGroups) {
+            this.totalCells = totalCells;
+            this.cellGroups = cellGroups;
+            this.cellGroupIndexes = evalCellGroupIndexes();
+            this.neighborCellGroups = evalNeighborCellGroups();
+            this.partners = evalPartners();
+            this.intersections = evalIntersections();
+            this.cellGroupDiffs = evalCellGroupDiffs();
+            this.intersectingPairs = evalIntersectingPairs();
+
+            this.cellGroupOffsets = makeOffsets(cellGroups);
+            this.cellGroupTable = flatten(cellGroups, cellGroupOffsets);
+            this.cellGroupIndexOffsets = makeOffsets(cellGroupIndexes);
+            this.cellGroupIndexTable =
+                    flatten(cellGroupIndexes, cellGroupIndexOffsets);
+            this.neighborCellOffsets = makeOffsets(neighborCellGroups);
+            this.neighborCellTable =
+                    flatten(neighborCellGroups, neighborCellOffsets);
+        }
+
+        Tables(int[][] cellGroups,
+               int[][] cellGroupIndexes,
+               int[][] neighborCellGroups,
+               int[][] partners,
+               int[][] intersections,
+               int[][][] cellGroupDiffs) {
+            this.totalCells = cellGroupIndexes.length;
+            this.cellGroups = cellGroups;
+            this.cellGroupIndexes = cellGroupIndexes;
+            this.neighborCellGroups = neighborCellGroups;
+            this.partners = partners;
+            this.intersections = intersections;
+            this.cellGroupDiffs = cellGroupDiffs;
+            this.intersectingPairs = evalIntersectingPairs();
+
+            this.cellGroupOffsets = makeOffsets(cellGroups);
+            this.cellGroupTable = flatten(cellGroups, cellGroupOffsets);
+            this.cellGroupIndexOffsets = makeOffsets(cellGroupIndexes);
+            this.cellGroupIndexTable =
+                    flatten(cellGroupIndexes, cellGroupIndexOffsets);
+            this.neighborCellOffsets = makeOffsets(neighborCellGroups);
+            this.neighborCellTable =
+                    flatten(neighborCellGroups, neighborCellOffsets);
+        }
+
+        private static int[] makeOffsets(int[][] rows) {
+            int[] offsets = new int[rows.length + 1];
+            for (int i = 0; i < rows.length; ++i)
+                offsets[i + 1] = offsets[i] + rows[i].length;
+            return offsets;
+        }
 
-        private final TreeSet<Integer> cellGroup;
-        private final Color color;
+        private static int[] flatten(int[][] rows, int[] offsets) {
+            int[] table = new int[offsets[rows.length]];
+            for (int i = 0; i < rows.length; ++i)
+                System.arraycopy(rows[i], 0, table, offsets[i], rows[i].length);
+            return table;
+        }
 
-        public ColoredCellGroup(TreeSet<Integer> cellGroup, Color color) {
-            this.cellGroup = cellGroup;
-            this.color = color;
+        private int[][] evalCellGroupIndexes() {
+            int[] counts = new int[totalCells];
+            for (int[] cellGroup : cellGroups)
+                for (int cell : cellGroup)
+                    ++counts[cell];
+            int[][] cellGroupIndexes = new int[totalCells][];
+            for (int cell = 0; cell < totalCells; ++cell) {
+                cellGroupIndexes[cell] = new int[counts[cell]];
+                counts[cell] = 0;
+            }
+            for (int cgIndex = 0; cgIndex < cellGroups.length; ++cgIndex)
+                for (int cell : cellGroups[cgIndex])
+                    cellGroupIndexes[cell][counts[cell]++] = cgIndex;
+            return cellGroupIndexes;
         }
 
-        public TreeSet<Integer> getCellGroup() {
-            return cellGroup;
+        private int[][] evalNeighborCellGroups() {
+            int[][] neighborCellGroups = new int[totalCells][];
+            boolean[] marked = new boolean[totalCells];
+            int[] found = new int[totalCells];
+            for (int cell = 0; cell < totalCells; ++cell) {
+                int n = 0;
+                marked[cell] = true;
+                for (int cellGroupIndex : cellGroupIndexes[cell])
+                    for (int otherCell : cellGroups[cellGroupIndex])
+                        if (!marked[otherCell]) {
+                            marked[otherCell] = true;
+                            found[n++] = otherCell;
+                        }
+                neighborCellGroups[cell] = Arrays.copyOf(found, n);
+                Arrays.sort(neighborCellGroups[cell]);
+                marked[cell] = false;
+                for (int i = 0; i < n; ++i)
+                    marked[found[i]] = false;
+            }
+            return neighborCellGroups;
         }
 
-        public Color getColor() {
-            return color;
+        private int[][] evalPartners() {
+            int[][] partners = new int[cellGroups.length][];
+            boolean[] marked = new boolean[cellGroups.length];
+            int[] found = new int[cellGroups.length];
+            for (int cgIndex = 0; cgIndex < cellGroups.length; ++cgIndex) {
+                int n = 0;
+                for (int cell : cellGroups[cgIndex])
+                    for (int other : cellGroupIndexes[cell])
+                        if (!marked[other]) {
+                            marked[other] = true;
+                            found[n++] = other;
+                        }
+                partners[cgIndex] = Arrays.copyOf(found, n);
+                Arrays.sort(partners[cgIndex]);
+                for (int i = 0; i < n; ++i)
+                    marked[found[i]] = false;
+            }
+            return partners;
+        }
+
+        private int[][] evalIntersections() {
+            int[][] intersections = new int[cellGroups.length][];
+            for (int cgIndex1 = 0; cgIndex1 < cellGroups.length; ++cgIndex1) {
+                int[] row = partners[cgIndex1];
+                intersections[cgIndex1] = new int[row.length];
+                for (int k = 0; k < row.length; ++k)
+                    intersections[cgIndex1][k] = intersect(
+                            cellGroups[cgIndex1],
+                            cellGroups[row[k]]);
+            }
+            return intersections;
+        }
+
+        private int[] evalIntersectingPairs() {
+            int n = 0;
+            for (int cgIndex1 = 0; cgIndex1 < cellGroups.length; ++cgIndex1)
+                for (int cgIndex2 : partners[cgIndex1])
+                    if (cgIndex1 < cgIndex2)
+                        ++n;
+            int[] pairs = new int[2 * n];
+            int i = 0;
+            for (int cgIndex1 = 0; cgIndex1 < cellGroups.length; ++cgIndex1)
+                for (int cgIndex2 : partners[cgIndex1])
+                    if (cgIndex1 < cgIndex2) {
+                        pairs[i++] = cgIndex1;
+                        pairs[i++] = cgIndex2;
+                    }
+            return pairs;
+        }
+
+        // Precondition: a and b are sorted in ascending order
+        private static int intersect(int[] a, int[] b) {
+            int result = 0;
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] == b[j]) {
+                    ++result;
+                    ++i;
+                    ++j;
+                } else if (a[i] < b[j]) {
+                    ++i;
+                } else {
+                    ++j;
+                }
+            }
+            return result;
+        }
+
+        private int[][][] evalCellGroupDiffs() {
+            int[][][] cellGroupDiffs = new int[cellGroups.length][][];
+            for (int cgIndex1 = 0; cgIndex1 < cellGroups.length; ++cgIndex1) {
+                int[] row = partners[cgIndex1];
+                cellGroupDiffs[cgIndex1] = new int[row.length][];
+                for (int k = 0; k < row.length; ++k)
+                    cellGroupDiffs[cgIndex1][k] = diff(cellGroups[cgIndex1],
+                            cellGroups[row[k]]);
+            }
+            return cellGroupDiffs;
+        }
+
+        private static int[] diff(int[] a, int[] b) {
+            int[] diff = new int[a.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    diff[k++] = a[i++];
+                } else if (a[i] > b[j]) {
+                    ++j;
+                } else {
+                    ++i;
+                    ++j;
+                }
+            }
+            while (i < a.length)
+                diff[k++] = a[i++];
+            return Arrays.copyOf(diff, k);
         }
     }
 }
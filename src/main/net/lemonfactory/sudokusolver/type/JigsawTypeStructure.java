@@ -4,8 +4,29 @@ import java.awt.Color;
 import java.util.*;
 import net.lemonfactory.sudokusolver.type.GeneralSudokuTypeStructure.Builder;
 
+/**
+ * Jigsaw structure made from an encoded string, where each character is the
+ * region of the cell at the same index. Structures are cached by their
+ * layouts, so repeated calls for the same layout return the same instance;
+ * two layouts are the same if they differ only by the characters naming the
+ * regions.
+ *
+ * @author Choongmin Lee
+ */
 public class JigsawTypeStructure implements SudokuTypeStructure {
 
+    private static final int CACHE_CAPACITY = 256;
+
+    @SuppressWarnings("serial")
+    private static final Map<Layout, JigsawTypeStructure> CACHE =
+            new LinkedHashMap<Layout, JigsawTypeStructure>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<Layout, JigsawTypeStructure> e) {
+                    return size() > CACHE_CAPACITY;
+                }
+            };
+
     private final SudokuTypeStructure backend;
 
     private JigsawTypeStructure(SudokuTypeStructure structure) {
@@ -14,16 +35,74 @@ public class JigsawTypeStructure implements SudokuTypeStructure {
 
     public static JigsawTypeStructure fromEncodedString(
             int size, String encodedString, char excludeChar) {
-        return fromEncodedString(
+        Layout layout = new Layout(
+                size, null, normalize(encodedString, excludeChar));
+        JigsawTypeStructure cached = getCached(layout);
+        if (cached != null)
+            return cached;
+        return putCached(layout, build(
                 RowColumnTypeStructure.getInstance(size),
                 encodedString,
-                excludeChar);
+                excludeChar));
     }
 
     public static JigsawTypeStructure fromEncodedString(
             SudokuTypeStructure structure,
             String encodedString,
             char excludeChar) {
+        Layout layout = new Layout(structure.size(),
+                                   structure,
+                                   normalize(encodedString, excludeChar));
+        JigsawTypeStructure cached = getCached(layout);
+        if (cached != null)
+            return cached;
+        return putCached(layout, build(structure, encodedString, excludeChar));
+    }
+
+    private static JigsawTypeStructure getCached(Layout layout) {
+        synchronized (CACHE) {
+            return CACHE.get(layout);
+        }
+    }
+
+    private static JigsawTypeStructure putCached(
+            Layout layout, JigsawTypeStructure structure) {
+        synchronized (CACHE) {
+            JigsawTypeStructure cached = CACHE.get(layout);
+            if (cached != null)
+                return cached;
+            CACHE.put(layout, structure);
+            return structure;
+        }
+    }
+
+    /* Renames regions to 1, 2, ... in the order of first appearance;
+       excluded cells become 0. */
+    private static String normalize(String encodedString, char excludeChar) {
+        char[] normalized = new char[encodedString.length()];
+        char[] regions = new char[16];
+        int numRegions = 0;
+        for (int i = 0; i < normalized.length; ++i) {
+            char c = encodedString.charAt(i);
+            if (c == excludeChar)
+                continue;
+            int k = 0;
+            while (k < numRegions && regions[k] != c)
+                ++k;
+            if (k == numRegions) {
+                if (numRegions == regions.length)
+                    regions = Arrays.copyOf(regions, 2 * numRegions);
+                regions[numRegions++] = c;
+            }
+            normalized[i] = (char) (k + 1);
+        }
+        return String.valueOf(normalized);
+    }
+
+    private static JigsawTypeStructure build(
+            SudokuTypeStructure structure,
+            String encodedString,
+            char excludeChar) {
         int size = structure.size();
         Map<Character, List<Integer>> map;
         map = new LinkedHashMap<Character, List<Integer>>();
@@ -108,6 +187,41 @@ public class JigsawTypeStructure implements SudokuTypeStructure {
         return backend.getNumIntersections(cellGroupIndex1, cellGroupIndex2);
     }
 
+    @Override
+    public int[] getIntersectingCellGroupPairs() {
+        return backend.getIntersectingCellGroupPairs();
+    }
+
+    @Override
+    public int[] getNeighborCellOffsets() {
+        return backend.getNeighborCellOffsets();
+    }
+
+    @Override
+    public int[] getNeighborCellTable() {
+        return backend.getNeighborCellTable();
+    }
+
+    @Override
+    public int[] getCellGroupOffsets() {
+        return backend.getCellGroupOffsets();
+    }
+
+    @Override
+    public int[] getCellGroupTable() {
+        return backend.getCellGroupTable();
+    }
+
+    @Override
+    public int[] getCellGroupIndexOffsets() {
+        return backend.getCellGroupIndexOffsets();
+    }
+
+    @Override
+    public int[] getCellGroupIndexTable() {
+        return backend.getCellGroupIndexTable();
+    }
+
     @Override
     public Color getCellGroupColor(int cellGroupIndex) {
         return backend.getCellGroupColor(cellGroupIndex);
@@ -115,7 +229,7 @@ public class JigsawTypeStructure implements SudokuTypeStructure {
 
     @Override
     public boolean equals(Object o) {
-        return o instanceof JigsawTypeStructure
+        return o == this || o instanceof JigsawTypeStructure
                  && backend.equals(((JigsawTypeStructure) o).backend);
     }
 
@@ -123,4 +237,32 @@ public class JigsawTypeStructure implements SudokuTypeStructure {
     public int hashCode() {
         return backend.hashCode();
     }
+
+    private static final class Layout {
+
+        private final int size;
+        private final SudokuTypeStructure base;  // null for rows and columns
+        private final String regions;
+
+        public Layout(int size, SudokuTypeStructure base, String regions) {
+            this.size = size;
+            this.base = base;
+            this.regions = regions;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Layout))
+                return false;
+            Layout l = (Layout) o;
+            return size == l.size
+                     && regions.equals(l.regions)
+                     && (base == null ? l.base == null : base.equals(l.base));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * regions.hashCode() + size;
+        }
+    }
 }
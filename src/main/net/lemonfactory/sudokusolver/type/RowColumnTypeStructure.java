@@ -94,6 +94,41 @@ public final class RowColumnTypeStructure implements SudokuTypeStructure {
         return backend.getNumIntersections(cellGroupIndex1, cellGroupIndex2);
     }
 
+    @Override
+    public int[] getIntersectingCellGroupPairs() {
+        return backend.getIntersectingCellGroupPairs();
+    }
+
+    @Override
+    public int[] getNeighborCellOffsets() {
+        return backend.getNeighborCellOffsets();
+    }
+
+    @Override
+    public int[] getNeighborCellTable() {
+        return backend.getNeighborCellTable();
+    }
+
+    @Override
+    public int[] getCellGroupOffsets() {
+        return backend.getCellGroupOffsets();
+    }
+
+    @Override
+    public int[] getCellGroupTable() {
+        return backend.getCellGroupTable();
+    }
+
+    @Override
+    public int[] getCellGroupIndexOffsets() {
+        return backend.getCellGroupIndexOffsets();
+    }
+
+    @Override
+    public int[] getCellGroupIndexTable() {
+        return backend.getCellGroupIndexTable();
+    }
+
     @Override
     public Color getCellGroupColor(int cellGroupIndex) {
         return backend.getCellGroupColor(cellGroupIndex);
@@ -101,7 +136,7 @@ public final class RowColumnTypeStructure implements SudokuTypeStructure {
 
     @Override
     public boolean equals(Object o) {
-        return o instanceof RowColumnTypeStructure
+        return o == this || o instanceof RowColumnTypeStructure
                  && backend.equals(((RowColumnTypeStructure) o).backend);
     }
 
@@ -0,0 +1,220 @@
+package net.lemonfactory.sudokusolver.type;
+
+import java.awt.Color;
+import java.util.*;
+import net.lemonfactory.sudokusolver.type.GeneralSudokuTypeStructure.Builder;
+
+/**
+ * <p>
+ * Samurai structure, which consists of five box grids overlapping at the
+ * corner boxes of the center grid. Cells lie on a board of
+ * {@link #getNumRows()} rows and {@link #getNumColumns()} columns, and only
+ * the cells covered by a grid are numbered, in row-major order; for 3×3
+ * boxes, the board is 21×21 and has 369 cells.
+ * </p>
+ * <p>
+ * A shared box belongs to two grids but is a single cell group.
+ * </p>
+ *
+ * @author Choongmin Lee
+ */
+public final class SamuraiTypeStructure implements SudokuTypeStructure {
+
+    private final SudokuTypeStructure backend;
+    private final int numRows;
+    private final int numColumns;
+    private final int[] rows;     // index: cell
+    private final int[] columns;  // index: cell
+
+    private SamuraiTypeStructure(int boxWidth, int boxHeight) {
+        int size = boxWidth * boxHeight;
+        numRows = 3 * size - 2 * boxHeight;
+        numColumns = 3 * size - 2 * boxWidth;
+        int[][] origins = {
+                {0, 0},
+                {0, numColumns - size},
+                {size - boxHeight, size - boxWidth},
+                {numRows - size, 0},
+                {numRows - size, numColumns - size}};
+
+        int[] cells = new int[numRows * numColumns];
+        Arrays.fill(cells, -1);
+        for (int[] origin : origins)
+            for (int r = 0; r < size; ++r)
+                for (int c = 0; c < size; ++c)
+                    cells[(origin[0] + r) * numColumns + origin[1] + c] = 0;
+        int n = 0;
+        for (int i = 0; i < cells.length; ++i)
+            if (cells[i] == 0)
+                cells[i] = n++;
+        rows = new int[n];
+        columns = new int[n];
+        for (int i = 0; i < cells.length; ++i)
+            if (cells[i] >= 0) {
+                rows[cells[i]] = i / numColumns;
+                columns[cells[i]] = i % numColumns;
+            }
+
+        Builder builder = GeneralSudokuTypeStructure.getBuilder(size);
+        Set<Integer> boxes = new HashSet<Integer>();
+        for (int[] origin : origins) {
+            for (int i = 0; i < size; ++i) {
+                int[] row = new int[size];
+                int[] column = new int[size];
+                for (int j = 0; j < size; ++j) {
+                    row[j] = cells[(origin[0] + i) * numColumns + origin[1] + j];
+                    column[j] = cells[(origin[0] + j) * numColumns + origin[1] + i];
+                }
+                builder.addCellGroup(row);
+                builder.addCellGroup(column);
+            }
+            for (int r = 0; r < size; r += boxHeight)
+                for (int c = 0; c < size; c += boxWidth) {
+                    int top = origin[0] + r;
+                    int left = origin[1] + c;
+                    if (!boxes.add(top * numColumns + left))
+                        continue;
+                    int[] box = new int[size];
+                    for (int k = 0; k < size; ++k)
+                        box[k] = cells[(top + k / boxWidth) * numColumns
+                                       + left + k % boxWidth];
+                    builder.addCellGroup(box);
+                }
+        }
+        builder.setBox(boxWidth, boxHeight);
+        backend = builder.build();
+    }
+
+    public static SamuraiTypeStructure getInstance(int boxWidth, int boxHeight) {
+        return new SamuraiTypeStructure(boxWidth, boxHeight);
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumColumns() {
+        return numColumns;
+    }
+
+    /**
+     * Returns the row of the specified cell on the board.
+     *
+     * @param cell index of the cell
+     * @return the row of the cell
+     */
+    public int getRow(int cell) {
+        return rows[cell];
+    }
+
+    /**
+     * Returns the column of the specified cell on the board.
+     *
+     * @param cell index of the cell
+     * @return the column of the cell
+     */
+    public int getColumn(int cell) {
+        return columns[cell];
+    }
+
+    @Override
+    public int size() {
+        return backend.size();
+    }
+
+    @Override
+    public int boxWidth() {
+        return backend.boxWidth();
+    }
+
+    @Override
+    public int boxHeight() {
+        return backend.boxHeight();
+    }
+
+    @Override
+    public int getTotalCells() {
+        return backend.getTotalCells();
+    }
+
+    @Override
+    public int getNumCellGroups() {
+        return backend.getNumCellGroups();
+    }
+
+    @Override
+    public int[] getCellGroupIndexes(int cell) {
+        return backend.getCellGroupIndexes(cell);
+    }
+
+    @Override
+    public int[] getCellGroup(int cellGroupIndex) {
+        return backend.getCellGroup(cellGroupIndex);
+    }
+
+    @Override
+    public int[] getCellGroupDiff(int cgIndex1, int cgIndex2) {
+        return backend.getCellGroupDiff(cgIndex1, cgIndex2);
+    }
+
+    @Override
+    public int[] getNeighborCells(int cell) {
+        return backend.getNeighborCells(cell);
+    }
+
+    @Override
+    public int getNumIntersections(int cellGroupIndex1, int cellGroupIndex2) {
+        return backend.getNumIntersections(cellGroupIndex1, cellGroupIndex2);
+    }
+
+    @Override
+    public int[] getIntersectingCellGroupPairs() {
+        return backend.getIntersectingCellGroupPairs();
+    }
+
+    @Override
+    public int[] getNeighborCellOffsets() {
+        return backend.getNeighborCellOffsets();
+    }
+
+    @Override
+    public int[] getNeighborCellTable() {
+        return backend.getNeighborCellTable();
+    }
+
+    @Override
+    public int[] getCellGroupOffsets() {
+        return backend.getCellGroupOffsets();
+    }
+
+    @Override
+    public int[] getCellGroupTable() {
+        return backend.getCellGroupTable();
+    }
+
+    @Override
+    public int[] getCellGroupIndexOffsets() {
+        return backend.getCellGroupIndexOffsets();
+    }
+
+    @Override
+    public int[] getCellGroupIndexTable() {
+        return backend.getCellGroupIndexTable();
+    }
+
+    @Override
+    public Color getCellGroupColor(int cellGroupIndex) {
+        return backend.getCellGroupColor(cellGroupIndex);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || o instanceof SamuraiTypeStructure
+                 && backend.equals(((SamuraiTypeStructure) o).backend);
+    }
+
+    @Override
+    public int hashCode() {
+        return backend.hashCode();
+    }
+}
@@ -104,6 +104,89 @@ public interface SudokuTypeStructure {
 
     public int getNumIntersections(int cellGroupIndex1, int cellGroupIndex2);
 
+    /**
+     * <p>
+     * Returns all pairs of distinct cell groups that share at least one cell.
+     * Pair {@code p} is {@code (pairs[2 * p], pairs[2 * p + 1])}, where the
+     * first index is less than the second; pairs are sorted by the first
+     * index and then by the second. Pairs not in this array have no
+     * intersections, and the diff of such a pair is the first cell group
+     * itself.
+     * </p>
+     * <p>
+     * <b>Warning:</b> Unlike other normal methods returning an array,
+     * the returned array must not be a newly allocated one (for performance);
+     * a caller must not change the values in the returned array (and there is
+     * absolutely no reason to do so).
+     * </p>
+     *
+     * @return pairs of indexes of cell groups that share at least one cell
+     */
+    public int[] getIntersectingCellGroupPairs();
+
+    /**
+     * <p>
+     * Returns the offsets of the neighbor cell table, whose length is the
+     * number of all cells plus one. The neighbors of cell {@code i}, as
+     * returned by {@link #getNeighborCells(int)}, are the elements of
+     * {@link #getNeighborCellTable()} from {@code offsets[i]} (inclusive) to
+     * {@code offsets[i + 1]} (exclusive). The same compressed form is used for
+     * the cell group table and the cell group index table.
+     * </p>
+     * <p>
+     * <b>Warning:</b> Unlike other normal methods returning an array,
+     * the returned array must not be a newly allocated one (for performance);
+     * a caller must not change the values in the returned array (and there is
+     * absolutely no reason to do so). The same applies to the other table
+     * methods.
+     * </p>
+     *
+     * @return the offsets of the neighbor cell table
+     */
+    public int[] getNeighborCellOffsets();
+
+    /**
+     * Returns the neighbor cells of all cells in one array.
+     *
+     * @return the neighbor cells of all cells
+     * @see #getNeighborCellOffsets()
+     */
+    public int[] getNeighborCellTable();
+
+    /**
+     * Returns the offsets of the cell group table, whose length is the number
+     * of cell groups plus one.
+     *
+     * @return the offsets of the cell group table
+     * @see #getNeighborCellOffsets()
+     */
+    public int[] getCellGroupOffsets();
+
+    /**
+     * Returns the cells of all cell groups in one array.
+     *
+     * @return the cells of all cell groups
+     * @see #getCellGroupOffsets()
+     */
+    public int[] getCellGroupTable();
+
+    /**
+     * Returns the offsets of the cell group index table, whose length is the
+     * number of all cells plus one.
+     *
+     * @return the offsets of the cell group index table
+     * @see #getNeighborCellOffsets()
+     */
+    public int[] getCellGroupIndexOffsets();
+
+    /**
+     * Returns the indexes of the cell groups of all cells in one array.
+     *
+     * @return the indexes of the cell groups of all cells
+     * @see #getCellGroupIndexOffsets()
+     */
+    public int[] getCellGroupIndexTable();
+
     /**
      * <p>
      * Returns the color of the specified cell group, for use of graphical
@@ -0,0 +1,324 @@
+package net.lemonfactory.sudokusolver.type;
+
+import java.awt.Color;
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * <p>
+ * This class consists of the interning registry of structures and related
+ * methods. Interned structures are canonical: equal structures interned are
+ * the same instance, so they can be compared by identity, which every
+ * structure checks first in its {@code equals} method.
+ * </p>
+ * <p>
+ * Each structure has a 64-bit ID computed from its size and cell groups, so
+ * the ID of a structure is the same across runs and can be stored in files
+ * or sent to other processes instead of the structure itself. Equal
+ * structures have the same ID. Interned structures can be looked up by their
+ * IDs.
+ * </p>
+ * <p>
+ * A structure can also be written as a snapshot, which holds its cell groups
+ * and all tables derived from them, and read back without computing the
+ * tables again. A snapshot is a sequence of big-endian {@code int}s, so it
+ * can be read from a memory-mapped file. A structure read from a snapshot is
+ * a {@link GeneralSudokuTypeStructure}, whatever the class of the written
+ * structure was.
+ * </p>
+ * <p>
+ * The registry does not keep interned structures from being garbage
+ * collected. This class is thread-safe.
+ * </p>
+ *
+ * @author Choongmin Lee
+ * @see SudokuTypeStructure
+ */
+public final class SudokuTypeStructures {
+
+    private static final int SNAPSHOT_MAGIC = 0x53535453;  // "SSTS"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final Map<SudokuTypeStructure, Entry> ENTRIES =
+            new WeakHashMap<SudokuTypeStructure, Entry>();
+    private static final Map<Long, Entry> IDS = new HashMap<Long, Entry>();
+
+    /**
+     * Utility class.
+     */
+    private SudokuTypeStructures() {}
+
+    /**
+     * Returns the canonical instance of the specified structure. If an equal
+     * structure has been interned, it is returned; otherwise the specified
+     * structure is interned and returned.
+     *
+     * @param structure structure to be interned
+     * @return the canonical instance equal to the structure
+     */
+    public static SudokuTypeStructure intern(SudokuTypeStructure structure) {
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.get(structure);
+            if (entry != null) {
+                SudokuTypeStructure interned = entry.get();
+                if (interned != null)
+                    return interned;
+            }
+            entry = new Entry(structure, computeId(structure));
+            ENTRIES.put(structure, entry);
+            if (!IDS.containsKey(entry.id) || IDS.get(entry.id).get() == null)
+                IDS.put(entry.id, entry);
+            return structure;
+        }
+    }
+
+    /**
+     * Returns the ID of the specified structure.
+     *
+     * @param structure structure whose ID to be returned
+     * @return the ID of the structure
+     */
+    public static long getId(SudokuTypeStructure structure) {
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.get(structure);
+            if (entry != null)
+                return entry.id;
+        }
+        return computeId(structure);
+    }
+
+    /**
+     * Returns the interned structure with the specified ID, or {@code null}
+     * if no such structure is interned.
+     *
+     * @param id ID of the structure
+     * @return the interned structure with the ID, or {@code null} if there is
+     *     no such structure
+     */
+    public static SudokuTypeStructure forId(long id) {
+        synchronized (ENTRIES) {
+            Entry entry = IDS.get(id);
+            if (entry == null)
+                return null;
+            SudokuTypeStructure structure = entry.get();
+            if (structure == null)
+                IDS.remove(id);
+            return structure;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the specified structure to the specified stream.
+     *
+     * @param structure structure to be written
+     * @param out stream to which the snapshot is written
+     * @throws IOException if an I/O error occurs
+     */
+    public static void writeSnapshot(
+            SudokuTypeStructure structure, OutputStream out)
+            throws IOException {
+        DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(out));
+        int numCellGroups = structure.getNumCellGroups();
+        int totalCells = structure.getTotalCells();
+        data.writeInt(SNAPSHOT_MAGIC);
+        data.writeInt(SNAPSHOT_VERSION);
+        data.writeInt(structure.size());
+        data.writeInt(structure.boxWidth());
+        data.writeInt(structure.boxHeight());
+        data.writeInt(totalCells);
+        data.writeInt(numCellGroups);
+        for (int g = 0; g < numCellGroups; ++g) {
+            Color color = structure.getCellGroupColor(g);
+            data.writeInt(color == null ? 0 : 1);
+            data.writeInt(color == null ? 0 : color.getRGB());
+        }
+        int[][] cellGroups = new int[numCellGroups][];
+        for (int g = 0; g < numCellGroups; ++g)
+            cellGroups[g] = structure.getCellGroup(g);
+        writeRows(data, cellGroups);
+        int[][] rows = new int[totalCells][];
+        for (int i = 0; i < totalCells; ++i)
+            rows[i] = structure.getCellGroupIndexes(i);
+        writeRows(data, rows);
+        for (int i = 0; i < totalCells; ++i)
+            rows[i] = structure.getNeighborCells(i);
+        writeRows(data, rows);
+
+        int[][] partners = makePartners(structure);
+        writeRows(data, partners);
+        int[][] intersections = new int[numCellGroups][];
+        List<int[]> diffs = new ArrayList<int[]>();
+        for (int g = 0; g < numCellGroups; ++g) {
+            intersections[g] = new int[partners[g].length];
+            for (int k = 0; k < partners[g].length; ++k) {
+                intersections[g][k] =
+                        structure.getNumIntersections(g, partners[g][k]);
+                diffs.add(structure.getCellGroupDiff(g, partners[g][k]));
+            }
+        }
+        writeRows(data, intersections);
+        writeRows(data, diffs.toArray(new int[diffs.size()][]));
+        data.flush();
+    }
+
+    /**
+     * Reads a snapshot from the specified buffer, starting at its position.
+     *
+     * @param buffer buffer from which the snapshot is read
+     * @return the structure read from the snapshot
+     * @throws IOException if the buffer does not hold a valid snapshot
+     */
+    public static GeneralSudokuTypeStructure readSnapshot(ByteBuffer buffer)
+            throws IOException {
+        IntBuffer in = buffer.duplicate()
+                .order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        try {
+            if (in.get() != SNAPSHOT_MAGIC)
+                throw new IOException("not a structure snapshot");
+            int version = in.get();
+            if (version != SNAPSHOT_VERSION)
+                throw new IOException("unsupported version: " + version);
+            int size = in.get();
+            int boxWidth = in.get();
+            int boxHeight = in.get();
+            int totalCells = in.get();
+            int numCellGroups = in.get();
+            Color[] colors = new Color[numCellGroups];
+            for (int g = 0; g < numCellGroups; ++g) {
+                boolean hasColor = in.get() != 0;
+                int rgb = in.get();
+                colors[g] = hasColor ? new Color(rgb, true) : null;
+            }
+            int[][] cellGroups = readRows(in, numCellGroups);
+            int[][] cellGroupIndexes = readRows(in, totalCells);
+            int[][] neighborCellGroups = readRows(in, totalCells);
+            int[][] partners = readRows(in, numCellGroups);
+            int[][] intersections = readRows(in, numCellGroups);
+            int numDiffs = 0;
+            for (int[] row : partners)
+                numDiffs += row.length;
+            int[][] diffs = readRows(in, numDiffs);
+            int[][][] cellGroupDiffs = new int[numCellGroups][][];
+            for (int g = 0, k = 0; g < numCellGroups; ++g) {
+                cellGroupDiffs[g] = Arrays.copyOfRange(
+                        diffs, k, k + partners[g].length);
+                k += partners[g].length;
+            }
+            return GeneralSudokuTypeStructure.fromTables(
+                    size,
+                    boxWidth,
+                    boxHeight,
+                    cellGroups,
+                    colors,
+                    cellGroupIndexes,
+                    neighborCellGroups,
+                    partners,
+                    intersections,
+                    cellGroupDiffs);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated snapshot");
+        } catch (RuntimeException e) {
+            throw new IOException("corrupt snapshot: " + e);
+        }
+    }
+
+    /**
+     * Reads a snapshot from the specified file, which is memory-mapped.
+     *
+     * @param file file from which the snapshot is read
+     * @return the structure read from the snapshot
+     * @throws IOException if an I/O error occurs or the file does not hold a
+     *     valid snapshot
+     */
+    public static GeneralSudokuTypeStructure readSnapshot(File file)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return readSnapshot(channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int[][] makePartners(SudokuTypeStructure structure) {
+        int numCellGroups = structure.getNumCellGroups();
+        int[] pairs = structure.getIntersectingCellGroupPairs();
+        int[] counts = new int[numCellGroups];
+        for (int p : pairs)
+            ++counts[p];
+        int[][] partners = new int[numCellGroups][];
+        for (int g = 0; g < numCellGroups; ++g) {
+            partners[g] = new int[counts[g] + 1];
+            partners[g][0] = g;
+            counts[g] = 1;
+        }
+        for (int p = 0; p < pairs.length; p += 2) {
+            int g1 = pairs[p];
+            int g2 = pairs[p + 1];
+            partners[g1][counts[g1]++] = g2;
+            partners[g2][counts[g2]++] = g1;
+        }
+        for (int[] row : partners)
+            Arrays.sort(row);
+        return partners;
+    }
+
+    private static void writeRows(DataOutputStream out, int[][] rows)
+            throws IOException {
+        int offset = 0;
+        out.writeInt(offset);
+        for (int[] row : rows) {
+            offset += row.length;
+            out.writeInt(offset);
+        }
+        for (int[] row : rows)
+            for (int e : row)
+                out.writeInt(e);
+    }
+
+    private static int[][] readRows(IntBuffer in, int numRows) {
+        int[] offsets = new int[numRows + 1];
+        in.get(offsets);
+        int[] table = new int[offsets[numRows]];
+        in.get(table);
+        int[][] rows = new int[numRows][];
+        for (int i = 0; i < numRows; ++i)
+            rows[i] = Arrays.copyOfRange(table, offsets[i], offsets[i + 1]);
+        return rows;
+    }
+
+    /* Only the cell groups are read, so the derived tables of a structure
+       are not built just to compute its ID. */
+    private static long computeId(SudokuTypeStructure structure) {
+        long h = 0xCBF29CE484222325L;
+        h = (h ^ structure.size()) * 0x100000001B3L;
+        h = (h ^ structure.getTotalCells()) * 0x100000001B3L;
+        for (int g = 0; g < structure.getNumCellGroups(); ++g) {
+            int[] cellGroup = structure.getCellGroup(g);
+            h = (h ^ cellGroup.length) * 0x100000001B3L;
+            for (int cell : cellGroup)
+                h = (h ^ cell) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Entry
+            extends WeakReference<SudokuTypeStructure> {
+
+        final long id;
+
+        Entry(SudokuTypeStructure structure, long id) {
+            super(structure);
+            this.id = id;
+        }
+    }
+}
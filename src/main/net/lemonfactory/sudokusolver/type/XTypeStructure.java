@@ -91,6 +91,41 @@ public final class XTypeStructure implements SudokuTypeStructure {
         return backend.getNumIntersections(cellGroupIndex1, cellGroupIndex2);
     }
 
+    @Override
+    public int[] getIntersectingCellGroupPairs() {
+        return backend.getIntersectingCellGroupPairs();
+    }
+
+    @Override
+    public int[] getNeighborCellOffsets() {
+        return backend.getNeighborCellOffsets();
+    }
+
+    @Override
+    public int[] getNeighborCellTable() {
+        return backend.getNeighborCellTable();
+    }
+
+    @Override
+    public int[] getCellGroupOffsets() {
+        return backend.getCellGroupOffsets();
+    }
+
+    @Override
+    public int[] getCellGroupTable() {
+        return backend.getCellGroupTable();
+    }
+
+    @Override
+    public int[] getCellGroupIndexOffsets() {
+        return backend.getCellGroupIndexOffsets();
+    }
+
+    @Override
+    public int[] getCellGroupIndexTable() {
+        return backend.getCellGroupIndexTable();
+    }
+
     @Override
     public Color getCellGroupColor(int cellGroupIndex) {
         return backend.getCellGroupColor(cellGroupIndex);
@@ -98,7 +133,7 @@ public final class XTypeStructure implements SudokuTypeStructure {
 
     @Override
     public boolean equals(Object o) {
-        return o instanceof XTypeStructure
+        return o == this || o instanceof XTypeStructure
                  && backend.equals(((XTypeStructure) o).backend);
     }
 
@@ -0,0 +1,103 @@
+package net.lemonfactory.sudokusolver;
+
+import static org.junit.Assert.*;
+import static net.lemonfactory.sudokusolver.SudokuTypes.*;
+
+import net.lemonfactory.sudokusolver.type.*;
+import org.junit.Test;
+
+public class SolverPlanTest {
+
+    @Test
+    public void testShared() {
+        SudokuSolver s1 = new SudokuSolver(BOX_9.getStructure());
+        SudokuSolver s2 = new SudokuSolver(BoxTypeStructure.getInstance(3, 3));
+        assertSame(s1.getPlan(), s2.getPlan());
+        assertNotSame(s1.getPlan(), new SudokuSolver(X_9.getStructure()).getPlan());
+    }
+
+    @Test
+    public void testTables() {
+        SudokuTypeStructure structure = X_9.getStructure();
+        SolverPlan plan = SolverPlan.getInstance(structure);
+        assertEquals(81, plan.getTotalCells());
+        assertEquals(structure.getNumCellGroups(), plan.getNumCellGroups());
+        for (int i = 0; i < plan.getTotalCells(); ++i) {
+            int[] neighbors = structure.getNeighborCells(i);
+            assertEquals(neighbors.length,
+                    plan.neighborStart[i + 1] - plan.neighborStart[i]);
+            for (int k = 0; k < neighbors.length; ++k)
+                assertEquals(neighbors[k], plan.neighbors[plan.neighborStart[i] + k]);
+        }
+        for (int p = 0; p < plan.pairs.length; p += 2) {
+            int g1 = plan.pairs[p];
+            int g2 = plan.pairs[p + 1];
+            assertTrue(structure.getNumIntersections(g1, g2) > 1);
+            assertEquals(structure.getCellGroupDiff(g1, g2).length,
+                    plan.diffStart[p + 1] - plan.diffStart[p]);
+        }
+    }
+
+    @Test
+    public void testSolve() {
+        testSolve(new SudokuSolver(BOX_9.getStructure()));
+    }
+
+    private static void testSolve(SudokuSolver solver) {
+        String puzzle = "..3.2.6..9..3.5..1..18.64....81.29..7.......8..67.82....26.95..8..2.3..9..5.1.3..";
+        assertTrue(solver.setPuzzle(BOX_9, puzzle));
+        assertTrue(solver.solvePuzzle());
+        assertEquals(
+                "483921657967345821251876493548132976729564138136798245372689514814253769695417382",
+                solver.getSolution(BOX_9));
+    }
+
+    @Test
+    public void testSetStructure() {
+        SudokuSolver solver = new SudokuSolver(X_9.getStructure());
+        solver.setStructure(BOX_9.getStructure());
+        assertSame(SolverPlan.getInstance(BOX_9.getStructure()), solver.getPlan());
+        assertFalse(solver.solvePuzzleForAnotherSolution());
+        testSolve(solver);
+        solver.setStructure(JIGSAW_9.getStructure());
+        for (int symbol : solver.getSolutionView())
+            assertEquals(-1, symbol);
+        String puzzle = "3.......4..2.6.1...1.9.8.2...5...6...2.....1...9...8...8.3.4.6...4.1.9..5.......7";
+        assertTrue(solver.setPuzzle(JIGSAW_9, puzzle));
+        assertEquals(1, solver.countSolutions(2));
+        solver.setStructure(BOX_9.getStructure());
+        testSolve(solver);
+        try {
+            solver.setStructure(BOX_16.getStructure());
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testSamurai() {
+        SamuraiTypeStructure structure =
+                (SamuraiTypeStructure) SAMURAI_9.getStructure();
+        assertTrue(SolverPlan.getInstance(structure).isMultiGrid());
+        assertFalse(SolverPlan.getInstance(BOX_9.getStructure()).isMultiGrid());
+        int[] puzzle = new int[structure.getTotalCells()];
+        for (int i = 0; i < puzzle.length; ++i) {
+            int r = structure.getRow(i);
+            int c = structure.getColumn(i);
+            puzzle[i] = i % 3 == 0 ? (3 * (r % 3) + r / 3 + c) % 9 : -1;
+        }
+        SudokuSolver solver = new SudokuSolver(structure);
+        assertTrue(solver.setPuzzle(puzzle));
+        assertTrue(solver.solvePuzzle());
+        int[] solution = solver.getSolution();
+        for (int i = 0; i < puzzle.length; ++i) {
+            assertTrue(solution[i] >= 0);
+            if (puzzle[i] >= 0)
+                assertEquals(puzzle[i], solution[i]);
+            for (int j : structure.getNeighborCells(i))
+                assertTrue(solution[i] != solution[j]);
+        }
+        String s = solver.getSolution(SAMURAI_9);
+        assertTrue(SAMURAI_9.isValidPuzzle(s));
+    }
+}
@@ -0,0 +1,111 @@
+package net.lemonfactory.sudokusolver;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+import static net.lemonfactory.sudokusolver.SudokuTypes.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+import net.lemonfactory.sudokusolver.type.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the solving paths allocate nothing per puzzle once warmed up,
+ * by the bytes allocated by the current thread. The tests are skipped on
+ * virtual machines which do not count them.
+ */
+public class SudokuAllocationTest {
+
+    private static final int WARM_UP = 30;
+    private static final int ROUNDS = 5;
+
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setUp() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void testSolver() {
+        for (int t = 0; t < PRESET_TYPES.size(); ++t) {
+            final SudokuType type = PRESET_TYPES.get(t);
+            final SudokuSolver solver = new SudokuSolver(type.getStructure());
+            final int[] puzzle = makePuzzle(type.getStructure(), 1);
+            final int[] solution = new int[puzzle.length];
+            final char[] text = new char[puzzle.length];
+            assertNoAllocation("preset " + t, new Runnable() {
+                @Override
+                public void run() {
+                    assertTrue(solver.setPuzzle(puzzle));
+                    assertTrue(solver.solvePuzzle());
+                    solver.getSolution(solution);
+                    solver.getSolution(type, text, 0);
+                    assertTrue(solver.countSolutions(2) >= 1);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testBatch() {
+        SudokuTypeStructure structure = BOX_9.getStructure();
+        final SudokuBatchSolver batch = new SudokuBatchSolver(structure);
+        final SudokuPipeline pipeline = new SudokuPipeline(structure);
+        final int[][] puzzles = new int[16][];
+        for (int k = 0; k < puzzles.length; ++k)
+            puzzles[k] = makePuzzle(structure, k);
+        final int[][] solutions = new int[16][81];
+        final boolean[] solved = new boolean[16];
+        assertNoAllocation("batch", new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(16, batch.solve(puzzles, solutions, solved));
+            }
+        });
+        assertNoAllocation("pipeline", new Runnable() {
+            @Override
+            public void run() {
+                for (int k = 0; k < puzzles.length; ++k)
+                    assertTrue(pipeline.solve(puzzles[k], solutions[k]));
+            }
+        });
+    }
+
+    /* Allows a few rounds for the compiler to settle; one round without
+       allocation is enough. */
+    private void assertNoAllocation(String name, Runnable task) {
+        for (int k = 0; k < WARM_UP; ++k)
+            task.run();
+        long thread = Thread.currentThread().getId();
+        long min = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS && min > 0; ++round) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            task.run();
+            min = Math.min(min, threads.getThreadAllocatedBytes(thread) - before);
+        }
+        assertEquals(name, 0, min);
+    }
+
+    /** Returns a solution of the structure with about half of it blank. */
+    private static int[] makePuzzle(SudokuTypeStructure structure, long seed) {
+        SudokuSolver solver = new SudokuSolver(structure);
+        int[] puzzle = new int[structure.getTotalCells()];
+        Arrays.fill(puzzle, -1);
+        assertTrue(solver.setPuzzle(puzzle));
+        assertTrue(solver.solvePuzzle());
+        puzzle = solver.getSolution();
+        Random random = new Random(seed);
+        for (int i = 0; i < puzzle.length; ++i)
+            if (random.nextBoolean())
+                puzzle[i] = -1;
+        return puzzle;
+    }
+}
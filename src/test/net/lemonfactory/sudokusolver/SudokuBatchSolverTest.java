@@ -0,0 +1,109 @@
+package net.lemonfactory.sudokusolver;
+
+import static org.junit.Assert.*;
+import static net.lemonfactory.sudokusolver.SudokuTypes.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import net.lemonfactory.sudokusolver.type.*;
+import org.junit.Test;
+
+public class SudokuBatchSolverTest {
+
+    @Test
+    public void testBox9() {
+        testAgainstSolver(BOX_9.getStructure(), 45);
+    }
+
+    @Test
+    public void testSmallStructures() {
+        testAgainstSolver(BoxTypeStructure.getInstance(2, 2), 10);
+        testAgainstSolver(BoxTypeStructure.getInstance(3, 2), 20);
+        testAgainstSolver(X_9.getStructure(), 45);
+    }
+
+    @Test
+    public void testInvalid() {
+        SudokuBatchSolver batch = new SudokuBatchSolver(BOX_9.getStructure());
+        int[][] puzzles = new int[3][81];
+        for (int[] puzzle : puzzles)
+            Arrays.fill(puzzle, -1);
+        puzzles[0][0] = 9;
+        puzzles[1][0] = 3;
+        puzzles[1][8] = 3;
+        int[][] solutions = new int[3][81];
+        boolean[] solved = new boolean[3];
+        assertEquals(1, batch.solve(puzzles, solutions, solved));
+        assertFalse(solved[0]);
+        assertFalse(solved[1]);
+        assertTrue(solved[2]);
+        assertEquals(2, batch.getRejectedInLanes());
+        assertEquals(1, batch.getEscalated());
+        try {
+            new SudokuBatchSolver(BOX_16.getStructure());
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /* Puzzles made by blanking random cells of shuffled solutions, so
+       there are easy, hard and multi-solution ones. */
+    private static void testAgainstSolver(
+            SudokuTypeStructure structure, int maxBlanks) {
+        int totalCells = structure.getTotalCells();
+        SudokuSolver solver = new SudokuSolver(structure);
+        int[] empty = new int[totalCells];
+        Arrays.fill(empty, -1);
+        assertTrue(solver.setPuzzle(empty));
+        assertTrue(solver.solvePuzzle());
+        int[] base = solver.getSolution();
+        Random random = new Random(42);
+        int n = 37;
+        int[][] puzzles = new int[n][];
+        for (int k = 0; k < n; ++k) {
+            int[] perm = permutation(structure.size(), random);
+            int[] puzzle = new int[totalCells];
+            for (int i = 0; i < totalCells; ++i)
+                puzzle[i] = perm[base[i]];
+            int blanks = k * maxBlanks / n;
+            for (int b = 0; b < blanks; ++b)
+                puzzle[random.nextInt(totalCells)] = -1;
+            if (k % 9 == 8)
+                puzzle[random.nextInt(totalCells)] = perm[0];
+            puzzles[k] = puzzle;
+        }
+        int[][] solutions = new int[n][totalCells];
+        boolean[] solved = new boolean[n];
+        SudokuBatchSolver batch = new SudokuBatchSolver(structure);
+        int count = batch.solve(puzzles, solutions, solved);
+        int expected = 0;
+        for (int k = 0; k < n; ++k) {
+            boolean ok = solver.setPuzzle(puzzles[k]) && solver.solvePuzzle();
+            assertEquals(ok, solved[k]);
+            if (ok) {
+                ++expected;
+                for (int i = 0; i < totalCells; ++i)
+                    if (puzzles[k][i] >= 0)
+                        assertEquals(puzzles[k][i], solutions[k][i]);
+                assertTrue(solver.setPuzzle(solutions[k]));
+            }
+        }
+        assertEquals(expected, count);
+        assertEquals(n, batch.getSolvedInLanes() + batch.getRejectedInLanes()
+                + batch.getEscalated());
+        assertTrue(batch.getSolvedInLanes() > 0);
+    }
+
+    private static int[] permutation(int n, Random random) {
+        int[] perm = new int[n];
+        for (int i = 0; i < n; ++i)
+            perm[i] = i;
+        for (int i = n - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int t = perm[i];
+            perm[i] = perm[j];
+            perm[j] = t;
+        }
+        return perm;
+    }
+}
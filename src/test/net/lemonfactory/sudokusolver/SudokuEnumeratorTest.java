@@ -0,0 +1,56 @@
+package net.lemonfactory.sudokusolver;
+
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import org.junit.Test;
+
+import net.lemonfactory.sudokusolver.type.*;
+
+public class SudokuEnumeratorTest {
+
+    @Test
+    public void testEmptyGrids() throws InterruptedException {
+        assertEquals(BigInteger.valueOf(288),
+                count(BoxTypeStructure.getInstance(2, 2), 16));
+        assertEquals(BigInteger.valueOf(28200960),
+                count(BoxTypeStructure.getInstance(3, 2), 36));
+    }
+
+    @Test
+    public void testAgainstSolver() throws InterruptedException {
+        SudokuTypeStructure s = BoxTypeStructure.getInstance(3, 2);
+        int[] puzzle = new int[36];
+        Arrays.fill(puzzle, -1);
+        puzzle[0] = 0;
+        puzzle[7] = 1;
+        puzzle[14] = 2;
+        puzzle[35] = 3;
+        SudokuSolver solver = new SudokuSolver(s);
+        assertTrue(solver.setPuzzle(puzzle));
+        long expected = solver.countSolutions(Long.MAX_VALUE);
+        SudokuEnumerator enumerator = new SudokuEnumerator(s);
+        enumerator.setParallelism(2);
+        assertEquals(BigInteger.valueOf(expected),
+                enumerator.countSolutions(puzzle));
+    }
+
+    @Test
+    public void testInvalidPuzzle() throws InterruptedException {
+        int[] puzzle = new int[16];
+        Arrays.fill(puzzle, -1);
+        puzzle[0] = 1;
+        puzzle[1] = 1;
+        assertEquals(BigInteger.ZERO,
+                new SudokuEnumerator(BoxTypeStructure.getInstance(2, 2))
+                    .countSolutions(puzzle));
+    }
+
+    private static BigInteger count(SudokuTypeStructure s, int cells)
+            throws InterruptedException {
+        int[] puzzle = new int[cells];
+        Arrays.fill(puzzle, -1);
+        return new SudokuEnumerator(s).countSolutions(puzzle);
+    }
+}
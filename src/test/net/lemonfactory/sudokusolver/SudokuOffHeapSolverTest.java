@@ -0,0 +1,92 @@
+package net.lemonfactory.sudokusolver;
+
+import static org.junit.Assert.*;
+import static net.lemonfactory.sudokusolver.TestPuzzles.*;
+import static net.lemonfactory.sudokusolver.SudokuTypes.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import net.lemonfactory.sudokusolver.type.*;
+import org.junit.Test;
+
+public class SudokuOffHeapSolverTest {
+
+    @Test
+    public void testSolve() {
+        SudokuOffHeapSolver solver = new SudokuOffHeapSolver(BOX_9.getStructure(), 1);
+        int[] solution = new int[81];
+        assertTrue(solver.solve(toIndexes(EASY), solution));
+        assertArrayEquals(toIndexes(EASY_SOLUTION), solution);
+        assertTrue(solver.solve(toIndexes(HARD), solution));
+        assertArrayEquals(toIndexes(HARD_SOLUTION), solution);
+        assertEquals(1, solver.countSolutions(toIndexes(HARD), 2));
+
+        int[] puzzle = toIndexes(EASY);
+        puzzle[0] = 2;
+        assertFalse(solver.solve(puzzle, solution));
+        puzzle[0] = 9;
+        assertFalse(solver.solve(puzzle, solution));
+        puzzle[0] = -2;
+        assertFalse(solver.solve(puzzle, solution));
+
+        // in place
+        puzzle = toIndexes(HARD);
+        assertTrue(solver.solve(puzzle, puzzle));
+        assertArrayEquals(toIndexes(HARD_SOLUTION), puzzle);
+        assertEquals(1, solver.getNumIdleArenas());
+        solver.clear();
+        assertEquals(0, solver.getNumIdleArenas());
+    }
+
+    @Test
+    public void testCountSolutions() {
+        SudokuOffHeapSolver solver =
+                new SudokuOffHeapSolver(BoxTypeStructure.getInstance(2, 2), 1);
+        int[] empty = new int[16];
+        Arrays.fill(empty, -1);
+        assertEquals(288, solver.countSolutions(empty, 1000));
+        assertEquals(10, solver.countSolutions(empty, 10));
+    }
+
+    @Test
+    public void testLargeStructures() {
+        for (SudokuType type : new SudokuType[] {BOX_16, BOX_25, SAMURAI_9}) {
+            SudokuTypeStructure structure = type.getStructure();
+            SudokuOffHeapSolver solver = new SudokuOffHeapSolver(structure, 1);
+            int[] puzzle = new int[structure.getTotalCells()];
+            Arrays.fill(puzzle, -1);
+            int[] solution = new int[puzzle.length];
+            assertTrue(solver.solve(puzzle, solution));
+            assertTrue(new SudokuVerifier(structure).isSolution(solution));
+        }
+    }
+
+    @Test
+    public void testConcurrentSolves() throws Exception {
+        final SudokuOffHeapSolver solver =
+                new SudokuOffHeapSolver(BOX_9.getStructure(), 2);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> results =
+                    new ArrayList<Future<int[]>>();
+            for (int k = 0; k < 32; ++k) {
+                final String puzzle = k % 2 == 0 ? EASY : HARD;
+                results.add(executor.submit(new Callable<int[]>() {
+                    @Override
+                    public int[] call() {
+                        int[] solution = new int[81];
+                        assertTrue(solver.solve(toIndexes(puzzle), solution));
+                        return solution;
+                    }
+                }));
+            }
+            for (int k = 0; k < results.size(); ++k)
+                assertArrayEquals(
+                        toIndexes(k % 2 == 0 ? EASY_SOLUTION : HARD_SOLUTION),
+                        results.get(k).get());
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(solver.getNumIdleArenas() <= 2);
+    }
+}
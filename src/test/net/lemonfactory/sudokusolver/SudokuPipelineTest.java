@@ -0,0 +1,76 @@
+package net.lemonfactory.sudokusolver;
+
+import static org.junit.Assert.*;
+import static net.lemonfactory.sudokusolver.TestPuzzles.*;
+import static net.lemonfactory.sudokusolver.SudokuTypes.*;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class SudokuPipelineTest {
+
+    @Test
+    public void testTiers() {
+        SudokuPipeline pipeline = new SudokuPipeline(BOX_9.getStructure());
+        int[] solution = new int[81];
+        assertTrue(pipeline.solve(toIndexes(EASY), solution));
+        assertArrayEquals(toIndexes(EASY_SOLUTION), solution);
+        assertEquals(1, pipeline.getSolvedBySingles());
+        assertEquals(0, pipeline.getEscalated());
+
+        assertTrue(pipeline.solve(toIndexes(HARD), solution));
+        assertArrayEquals(toIndexes(HARD_SOLUTION), solution);
+        assertEquals(1, pipeline.getSolvedBySearch());
+        assertEquals(1, pipeline.getEscalated());
+
+        // two clues of the same symbol in a row
+        int[] puzzle = toIndexes(EASY);
+        puzzle[0] = 2;
+        assertFalse(pipeline.solve(puzzle, solution));
+        // two clues of the same symbol in a column
+        puzzle = toIndexes(EASY);
+        puzzle[0] = 8;
+        assertFalse(pipeline.solve(puzzle, solution));
+        assertEquals(2, pipeline.getRejectedBySingles());
+        assertEquals(1, pipeline.getEscalated());
+
+        // solving in place
+        puzzle = toIndexes(HARD);
+        assertTrue(pipeline.solve(puzzle, puzzle));
+        assertArrayEquals(toIndexes(HARD_SOLUTION), puzzle);
+        pipeline.resetStatistics();
+        assertEquals(0, pipeline.getSolvedBySearch());
+    }
+
+    @Test
+    public void testSpecialized() {
+        SudokuPipeline generic = new SudokuPipeline(BOX_9.getStructure());
+        SudokuPipeline specialized =
+                new SudokuPipeline(BOX_9.getStructure(), true);
+        int[] s1 = new int[81];
+        int[] s2 = new int[81];
+        for (String puzzle : new String[] {EASY, HARD}) {
+            assertTrue(generic.solve(toIndexes(puzzle), s1));
+            assertTrue(specialized.solve(toIndexes(puzzle), s2));
+            assertArrayEquals(s1, s2);
+        }
+        assertEquals(generic.getSolvedBySingles(),
+                specialized.getSolvedBySingles());
+        assertSame(SolverPlan.getInstance(BOX_9.getStructure())
+                        .getSpecializedKernel(),
+                SolverPlan.getInstance(BOX_9.getStructure())
+                        .getSpecializedKernel());
+    }
+
+    @Test
+    public void testOtherStructures() {
+        SudokuPipeline pipeline = new SudokuPipeline(X_9.getStructure());
+        int[] empty = new int[81];
+        Arrays.fill(empty, -1);
+        int[] solution = new int[81];
+        assertTrue(pipeline.solve(empty, solution));
+        SudokuSolver checker = new SudokuSolver(X_9.getStructure());
+        assertTrue(checker.setPuzzle(solution));
+        assertEquals(1, pipeline.getEscalated());
+    }
+}
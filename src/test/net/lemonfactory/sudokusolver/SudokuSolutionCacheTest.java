@@ -0,0 +1,75 @@
+package net.lemonfactory.sudokusolver;
+
+import static org.junit.Assert.*;
+import static net.lemonfactory.sudokusolver.TestPuzzles.*;
+import static net.lemonfactory.sudokusolver.SudokuTypes.BOX_9;
+
+import org.junit.Test;
+
+import net.lemonfactory.sudokusolver.type.*;
+
+public class SudokuSolutionCacheTest {
+
+    @Test
+    public void testEquivalentPuzzles() {
+        SudokuSolutionCache cache = new SudokuSolutionCache(4);
+        SudokuSolver solver = new SudokuSolver(BOX_9.getStructure());
+        String solution = cache.solve(solver, BOX_9, CLASSIC);
+        assertNotNull(solution);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // Rotate by 90 degrees and swap symbols 1 and 9
+        char[] rotated = new char[81];
+        for (int r = 0; r < 9; ++r)
+            for (int c = 0; c < 9; ++c)
+                rotated[c * 9 + (8 - r)] = swap(CLASSIC.charAt(r * 9 + c));
+        String puzzle = String.valueOf(rotated);
+        String cached = cache.get(BOX_9, puzzle);
+        assertEquals(1, cache.getHits());
+        for (int r = 0; r < 9; ++r)
+            for (int c = 0; c < 9; ++c)
+                assertEquals(swap(solution.charAt(r * 9 + c)),
+                        cached.charAt(c * 9 + (8 - r)));
+    }
+
+    @Test
+    public void testEviction() {
+        SudokuSolutionCache cache = new SudokuSolutionCache(1);
+        SudokuSolver solver = new SudokuSolver(BOX_9.getStructure());
+        cache.solve(solver, BOX_9, CLASSIC);
+        cache.solve(solver, BOX_9, CLASSIC.replace('5', '.'));
+        assertEquals(1, cache.size());
+        assertNull(cache.get(BOX_9, CLASSIC));
+    }
+
+    @Test
+    public void testCanonicalForm() {
+        SudokuCanonicalizer c =
+                SudokuCanonicalizer.getInstance(BOX_9.getStructure());
+        assertEquals(8, c.getNumOrientations());
+        SudokuTypeStructure jigsaw = SudokuTypes.JIGSAW_9.getStructure();
+        assertEquals(2, SudokuCanonicalizer.getInstance(jigsaw)
+                .getNumOrientations());
+    }
+
+    private static char swap(char c) {
+        return c == '1' ? '9' : c == '9' ? '1' : c;
+    }
+
+    @Test
+    public void testLargeType() {
+        StringBuilder symbols = new StringBuilder();
+        for (char c = 0x100; c < 0x200; ++c)
+            symbols.append(c);
+        SudokuType type = new SudokuType(
+                BoxTypeStructure.getInstance(16, 16),
+                new SymbolSet(symbols.toString()),
+                '.');
+        try {
+            new SudokuSolutionCache(1).get(type, "");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
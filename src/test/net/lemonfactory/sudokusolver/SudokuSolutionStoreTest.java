@@ -0,0 +1,110 @@
+package net.lemonfactory.sudokusolver;
+
+import static org.junit.Assert.*;
+import static net.lemonfactory.sudokusolver.TestPuzzles.*;
+import static net.lemonfactory.sudokusolver.SudokuTypes.BOX_9;
+
+import java.io.*;
+import net.lemonfactory.sudokusolver.type.*;
+import org.junit.Test;
+
+public class SudokuSolutionStoreTest {
+
+    @Test
+    public void testReopen() throws IOException {
+        File name = File.createTempFile("store", "");
+        File dataFile = new File(name.getPath() + ".dat");
+        File indexFile = new File(name.getPath() + ".idx");
+        try {
+            SudokuSolver solver = new SudokuSolver(BOX_9.getStructure());
+            SudokuSolutionStore store = SudokuSolutionStore.open(name);
+            String solution = store.solve(solver, BOX_9, CLASSIC);
+            assertNotNull(solution);
+            assertFalse(store.put(BOX_9, CLASSIC, solution, 0, 0));
+            // Enough records to grow the index
+            for (int i = 0; i < 2000; ++i)
+                store.put(BOX_9, variant(i), solution, i, i);
+            store.close();
+
+            store = SudokuSolutionStore.open(name);
+            assertEquals(2001, store.size());
+            assertEquals(solution, store.get(BOX_9, CLASSIC).getSolution());
+            assertEquals(7, store.get(BOX_9, variant(7)).getGuesses());
+            store.close();
+
+            // The index is rebuilt from the data file
+            assertTrue(indexFile.delete());
+            store = SudokuSolutionStore.open(name);
+            assertEquals(2001, store.size());
+            assertEquals(solution, store.get(BOX_9, CLASSIC).getSolution());
+            store.close();
+        } finally {
+            name.delete();
+            dataFile.delete();
+            indexFile.delete();
+        }
+    }
+
+    @Test
+    public void testCorruptIndex() throws IOException {
+        File name = File.createTempFile("store", "");
+        File dataFile = new File(name.getPath() + ".dat");
+        File indexFile = new File(name.getPath() + ".idx");
+        try {
+            SudokuSolver solver = new SudokuSolver(BOX_9.getStructure());
+            SudokuSolutionStore store = SudokuSolutionStore.open(name);
+            String solution = store.solve(solver, BOX_9, CLASSIC);
+            store.close();
+
+            // A capacity of 0x80000000 has one bit set, but is not sane
+            RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+            try {
+                raf.seek(8);
+                raf.writeInt(0x80000000);
+            } finally {
+                raf.close();
+            }
+            store = SudokuSolutionStore.open(name);
+            assertEquals(1, store.size());
+            assertEquals(solution, store.get(BOX_9, CLASSIC).getSolution());
+            store.close();
+        } finally {
+            name.delete();
+            dataFile.delete();
+            indexFile.delete();
+        }
+    }
+
+    @Test
+    public void testLargeType() throws IOException {
+        StringBuilder symbols = new StringBuilder();
+        for (char c = 0x100; c < 0x200; ++c)
+            symbols.append(c);
+        SudokuType type = new SudokuType(
+                BoxTypeStructure.getInstance(16, 16),
+                new SymbolSet(symbols.toString()),
+                '.');
+        File name = File.createTempFile("store", "");
+        SudokuSolutionStore store = SudokuSolutionStore.open(name);
+        try {
+            store.put(type, "", "", 0, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        } finally {
+            store.close();
+            name.delete();
+            new File(name.getPath() + ".dat").delete();
+            new File(name.getPath() + ".idx").delete();
+        }
+    }
+
+    /* Distinct puzzles made by dropping givens */
+    private static String variant(int i) {
+        char[] p = CLASSIC.toCharArray();
+        int k = 0;
+        for (int j = 0; j < p.length; ++j)
+            if (p[j] != '.' && ((i + 1) >> k++ & 1) != 0)
+                p[j] = '.';
+        return String.valueOf(p);
+    }
+}
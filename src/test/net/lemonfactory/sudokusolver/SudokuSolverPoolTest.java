@@ -0,0 +1,64 @@
+package net.lemonfactory.sudokusolver;
+
+import static org.junit.Assert.*;
+import static net.lemonfactory.sudokusolver.SudokuTypes.*;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class SudokuSolverPoolTest {
+
+    @Test
+    public void testBorrowAndRelease() throws InterruptedException {
+        SudokuSolverPool pool = new SudokuSolverPool(1, 1, TimeUnit.HOURS);
+        SudokuSolver s1 = pool.borrow(BOX_9.getStructure());
+        assertNull(pool.borrow(BOX_9.getStructure(), 1, TimeUnit.MILLISECONDS));
+        SudokuSolver s2 = pool.borrow(BOX_16.getStructure());
+        assertNotSame(s1, s2);
+        pool.release(s1);
+        assertSame(s1, pool.borrow(BOX_9.getStructure()));
+        pool.release(s1);
+        pool.release(s2);
+        assertEquals(2, pool.getIdleCount());
+        try {
+            pool.release(s2);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(2, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    public void testChangedStructure() throws InterruptedException {
+        SudokuSolverPool pool = new SudokuSolverPool(1, 1, TimeUnit.HOURS);
+        SudokuSolver s1 = pool.borrow(BOX_9.getStructure());
+        s1.setStructure(JIGSAW_9.getStructure());
+        pool.release(s1);
+        assertEquals(0, pool.getIdleCount());
+        SudokuSolver s2 =
+                pool.borrow(BOX_9.getStructure(), 1, TimeUnit.SECONDS);
+        assertNotNull(s2);
+        assertNotSame(s1, s2);
+        assertEquals(BOX_9.getStructure(), s2.getStructure());
+        try {
+            pool.release(new SudokuSolver(BOX_9.getStructure()));
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    @Test
+    public void testEviction() throws InterruptedException {
+        SudokuSolverPool pool = new SudokuSolverPool(2, 0, TimeUnit.SECONDS);
+        SudokuSolver s = pool.borrow(BOX_9.getStructure());
+        pool.release(s);
+        Thread.sleep(2);
+        assertEquals(1, pool.evictIdle());
+        assertEquals(0, pool.getIdleCount());
+        // the partition was dropped, and a new one is made on demand
+        SudokuSolver t = pool.borrow(BOX_9.getStructure());
+        assertNotSame(s, t);
+        pool.release(t);
+        assertEquals(1, pool.getIdleCount());
+    }
+}
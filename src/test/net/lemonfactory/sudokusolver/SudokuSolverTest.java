@@ -0,0 +1,207 @@
+package net.lemonfactory.sudokusolver;
+
+import static org.junit.Assert.*;
+import static net.lemonfactory.sudokusolver.TestPuzzles.*;
+import static net.lemonfactory.sudokusolver.SudokuTypes.*;
+
+import java.nio.ByteBuffer;
+import net.lemonfactory.sudokusolver.type.GeneralSudokuTypeStructure;
+import org.junit.Test;
+
+public class SudokuSolverTest {
+
+    @Test
+    public void testClues() {
+        int[] puzzle = toIndexes(EASY);
+        SudokuSolver solver = new SudokuSolver(BOX_9.getStructure());
+        for (int i = 0; i < puzzle.length; ++i)
+            if (puzzle[i] >= 0)
+                assertTrue(solver.addClue(i, puzzle[i]));
+        assertEquals(EASY, solver.getGivenPuzzle(BOX_9));
+        assertTrue(solver.solvePuzzle());
+        assertEquals(EASY_SOLUTION, solver.getSolution(BOX_9));
+
+        // a clue conflicting with a neighbor is rejected
+        assertFalse(solver.addClue(0, puzzle[2]));
+        assertEquals(EASY, solver.getGivenPuzzle(BOX_9));
+
+        // removing a clue in the middle keeps the later ones
+        solver.removeClue(4);
+        puzzle[4] = -1;
+        assertEquals(countSolutions(puzzle), solver.countSolutions(100));
+        solver.removeClue(4);
+        assertTrue(solver.addClue(4, 1));
+        puzzle[4] = 1;
+        assertTrue(solver.solvePuzzle());
+        assertEquals(EASY_SOLUTION, solver.getSolution(BOX_9));
+
+        // replacing a clue
+        assertTrue(solver.addClue(78, 6));
+        puzzle[78] = 6;
+        assertEquals(0, solver.countSolutions(100));
+        assertTrue(solver.addClue(78, 2));
+        puzzle[78] = 2;
+        assertTrue(solver.solvePuzzle());
+        assertEquals(EASY_SOLUTION, solver.getSolution(BOX_9));
+
+        // removing a clue set by setPuzzle
+        assertTrue(solver.setPuzzle(puzzle));
+        solver.removeClue(2);
+        puzzle[2] = -1;
+        assertTrue(solver.addClue(3, 8));
+        puzzle[3] = 8;
+        assertEquals(countSolutions(puzzle), solver.countSolutions(100));
+        assertArrayEquals(puzzle, toIndexes(solver.getGivenPuzzle(BOX_9)));
+    }
+
+    @Test
+    public void testCluesOnEmptyGrid() {
+        SudokuSolver solver = new SudokuSolver(BOX_16.getStructure());
+        assertTrue(solver.addClue(0, 0));
+        assertTrue(solver.solvePuzzle());
+        int[] solution = solver.getSolution();
+        assertEquals(0, solution[0]);
+        solver.removeClue(0);
+        assertTrue(solver.addClue(0, 5));
+        assertTrue(solver.solvePuzzle());
+        assertEquals(5, solver.getSolution()[0]);
+        try {
+            solver.addClue(256, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testPropagate() {
+        SudokuSolver solver = new SudokuSolver(BOX_9.getStructure());
+        assertTrue(solver.setPuzzle(BOX_9, EASY));
+        SudokuPropagation result = solver.propagate();
+        assertTrue(result.isSolved());
+        assertFalse(result.isContradiction());
+        for (int i = 0; i < 81; ++i)
+            assertEquals(1L << (EASY_SOLUTION.charAt(i) - '1'),
+                    result.getCandidateMask(i));
+
+        assertTrue(solver.setPuzzle(BOX_9, HARD));
+        result = solver.propagate();
+        assertFalse(result.isSolved());
+        assertFalse(result.isContradiction());
+        boolean reduced = false;
+        for (int i = 0; i < 81; ++i) {
+            assertTrue(result.hasCandidate(i, HARD_SOLUTION.charAt(i) - '1'));
+            if (HARD.charAt(i) != '.')
+                assertEquals(1, result.getNumCandidates(i));
+            else if (result.getNumCandidates(i) < 9)
+                reduced = true;
+        }
+        assertTrue(reduced);
+        assertEquals(HARD, solver.getGivenPuzzle(BOX_9));
+        assertTrue(solver.solvePuzzle());
+        assertEquals(HARD_SOLUTION, solver.getSolution(BOX_9));
+
+        solver = new SudokuSolver(BOX_9.getStructure());
+        for (int i = 0; i < 8; ++i)
+            assertTrue(solver.addClue(i, i));
+        assertFalse(solver.propagate().isContradiction());
+        assertTrue(solver.addClue(80, 8));
+        assertTrue(solver.propagate().isContradiction());
+        assertFalse(solver.solvePuzzle());
+        solver.removeClue(80);
+        assertFalse(solver.propagate().isContradiction());
+        assertTrue(solver.solvePuzzle());
+    }
+
+    @Test
+    public void testBox9Engine() {
+        SudokuSolver engine = new SudokuSolver(BOX_9.getStructure());
+        // the same cell groups, but not a BoxTypeStructure, so generic
+        SudokuSolver generic = new SudokuSolver(
+                GeneralSudokuTypeStructure.getBuilder(BOX_9.getStructure())
+                    .build());
+        String[] puzzles = {
+            EASY,
+            HARD,
+            "..............3.85..1.2.......5.7.....4...1...9.......5......73..2.1........4...9",
+            "8..........36......7..9.2...5...7.......457.....1...3...1....68..85...1.......4..",
+            "12.......34...............................................................5.....1"};
+        for (String puzzle : puzzles) {
+            int[] indexes = toIndexes(puzzle);
+            assertTrue(engine.setPuzzle(indexes));
+            assertTrue(generic.setPuzzle(indexes));
+            long count = engine.countSolutions(50);
+            assertEquals(generic.countSolutions(50), count);
+            if (count == 1) {
+                assertTrue(engine.solvePuzzle());
+                assertTrue(generic.solvePuzzle());
+                assertArrayEquals(generic.getSolution(), engine.getSolution());
+            }
+        }
+        assertTrue(engine.setPuzzle(BOX_9, puzzles[1]));
+        assertTrue(engine.solvePuzzle());
+        assertTrue(engine.getGuesses() > 0);
+        int[] solution = engine.getSolution();
+        assertFalse(engine.solvePuzzleForAnotherSolution());
+        SudokuSolver checker = new SudokuSolver(BOX_9.getStructure());
+        assertTrue(checker.setPuzzle(solution));
+
+        // clue edits and propagation still work with the engine
+        assertTrue(engine.addClue(1, solution[1]));
+        assertTrue(engine.solvePuzzle());
+        assertArrayEquals(solution, engine.getSolution());
+        engine.removeClue(1);
+        assertFalse(engine.propagate().isContradiction());
+    }
+
+    @Test
+    public void testWriteInto() throws Exception {
+        SudokuSolver solver = new SudokuSolver(BOX_9.getStructure());
+        assertTrue(solver.setPuzzle(BOX_9, EASY));
+        assertTrue(solver.solvePuzzle());
+        assertArrayEquals(toIndexes(EASY_SOLUTION), solver.getSolutionView());
+
+        char[] chars = new char[83];
+        solver.getSolution(BOX_9, chars, 2);
+        assertEquals(EASY_SOLUTION, new String(chars, 2, 81));
+        solver.getGivenPuzzle(BOX_9, chars, 0);
+        assertEquals(EASY, new String(chars, 0, 81));
+
+        byte[] bytes = new byte[81];
+        solver.getSolution(BOX_9, bytes, 0);
+        assertEquals(EASY_SOLUTION, new String(bytes, "ISO-8859-1"));
+
+        ByteBuffer buffer = ByteBuffer.allocate(200);
+        buffer.put((byte) '#');
+        solver.getGivenPuzzle(BOX_9, buffer);
+        solver.getSolution(BOX_9, buffer);
+        assertEquals(163, buffer.position());
+        assertEquals("#" + EASY + EASY_SOLUTION,
+                new String(buffer.array(), 0, 163, "ISO-8859-1"));
+
+        StringBuilder text = new StringBuilder("> ");
+        solver.getSolution(BOX_9, text);
+        assertEquals("> " + EASY_SOLUTION, text.toString());
+
+        try {
+            solver.getSolution(BOX_9, new char[81], 1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+        }
+        try {
+            solver.getSolution(BOX_9, ByteBuffer.allocate(80));
+            fail();
+        } catch (java.nio.BufferOverflowException e) {
+        }
+        try {
+            solver.getSolution(BOX_16, text);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    private static long countSolutions(int[] puzzle) {
+        SudokuSolver solver = new SudokuSolver(BOX_9.getStructure());
+        assertTrue(solver.setPuzzle(puzzle));
+        return solver.countSolutions(100);
+    }
+}
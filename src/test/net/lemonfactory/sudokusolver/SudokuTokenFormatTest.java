@@ -0,0 +1,47 @@
+package net.lemonfactory.sudokusolver;
+
+import static org.junit.Assert.*;
+
+import net.lemonfactory.sudokusolver.type.*;
+import org.junit.Test;
+
+public class SudokuTokenFormatTest {
+
+    @Test
+    public void testParse() {
+        SudokuTypeStructure s = BoxTypeStructure.getInstance(2, 1);
+        assertArrayEquals(new int[] {0, -1, -1, 0},
+                SudokuTokenFormat.parse(s, " 1, 0\n. 1 "));
+        assertNull(SudokuTokenFormat.parse(s, "1 0 0"));
+        assertNull(SudokuTokenFormat.parse(s, "1 0 0 0 0"));
+        assertNull(SudokuTokenFormat.parse(s, "1 0 0 3"));
+        assertNull(SudokuTokenFormat.parse(s, "1 0 .2 0"));
+        assertNull(SudokuTokenFormat.parse(s, "1 0 x 0"));
+        assertEquals("1 0 0 2", SudokuTokenFormat.format(new int[] {0, -1, -1, 1}));
+    }
+
+    @Test
+    public void testLargeBoards() {
+        testLargeBoard(8, 8);
+        testLargeBoard(10, 10);
+    }
+
+    private static void testLargeBoard(int boxWidth, int boxHeight) {
+        SudokuTypeStructure structure =
+                BoxTypeStructure.getInstance(boxWidth, boxHeight);
+        int size = structure.size();
+        int[] solution = new int[size * size];
+        for (int r = 0; r < size; ++r)
+            for (int c = 0; c < size; ++c)
+                solution[r * size + c] =
+                        (boxWidth * (r % boxHeight) + r / boxHeight + c) % size;
+        int[] puzzle = solution.clone();
+        for (int i = 0; i < puzzle.length; i += 3)
+            puzzle[i] = -1;
+        SudokuSolver solver = new SudokuSolver(structure);
+        assertTrue(solver.setPuzzle(SudokuTokenFormat.parse(
+                structure, SudokuTokenFormat.format(puzzle))));
+        assertTrue(solver.solvePuzzle());
+        assertArrayEquals(solution, solver.getSolution());
+    }
+}
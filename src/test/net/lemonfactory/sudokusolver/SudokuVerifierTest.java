@@ -0,0 +1,104 @@
+package net.lemonfactory.sudokusolver;
+
+import static org.junit.Assert.*;
+import static net.lemonfactory.sudokusolver.SudokuTypes.*;
+
+import java.util.Arrays;
+import net.lemonfactory.sudokusolver.type.*;
+import org.junit.Test;
+
+public class SudokuVerifierTest {
+
+    @Test
+    public void testRegular() {
+        testStructure(BOX_9.getStructure());
+        testStructure(BOX_16.getStructure());
+        testStructure(BoxTypeStructure.getInstance(3, 2));
+    }
+
+    @Test
+    public void testGroups() {
+        testStructure(X_9.getStructure());
+        testStructure(JIGSAW_9.getStructure());
+        testStructure(SAMURAI_9.getStructure());
+    }
+
+    @Test
+    public void testText() {
+        int[] solution = solve(BOX_9.getStructure());
+        StringBuilder text = new StringBuilder();
+        for (int symbol : solution)
+            text.append(BOX_9.getSymbols().get(symbol));
+        SudokuVerifier verifier = new SudokuVerifier(BOX_9.getStructure());
+        assertTrue(verifier.isSolution(BOX_9, text));
+        text.setCharAt(40, '.');
+        assertFalse(verifier.isSolution(BOX_9, text));
+        text.setCharAt(40, 'x');
+        assertFalse(verifier.isSolution(BOX_9, text));
+        assertFalse(verifier.isSolution(BOX_9, text.substring(1)));
+        try {
+            verifier.isSolution(BOX_16, text);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testBulk() {
+        SudokuTypeStructure structure = BOX_9.getStructure();
+        int[] solution = solve(structure);
+        byte[] grids = new byte[3 * 81 + 5];
+        for (int k = 0; k < 3; ++k)
+            for (int i = 0; i < 81; ++i)
+                grids[5 + k * 81 + i] = (byte) solution[i];
+        grids[5 + 81 + 10] = (byte) 0xFF;
+        boolean[] results = new boolean[3];
+        SudokuVerifier verifier = new SudokuVerifier(structure);
+        assertEquals(2, verifier.verify(grids, 5, 3, results));
+        assertTrue(Arrays.equals(new boolean[] {true, false, true}, results));
+        assertEquals(2, verifier.verify(grids, 5, 3, null));
+    }
+
+    private static void testStructure(SudokuTypeStructure structure) {
+        SudokuVerifier verifier = new SudokuVerifier(structure);
+        int[] solution = solve(structure);
+        assertTrue(verifier.isSolution(solution));
+        assertTrue(verifier.isSolution(toBytes(solution), 0));
+
+        int[] grid = solution.clone();
+        grid[0] = -1;
+        assertFalse(verifier.isSolution(grid));
+        assertFalse(verifier.isSolution(toBytes(grid), 0));
+        grid[0] = structure.size();
+        assertFalse(verifier.isSolution(grid));
+        assertFalse(verifier.isSolution(toBytes(grid), 0));
+
+        /* Swapping two cells of a cell group keeps the group valid but
+           breaks another group. */
+        int[] group = structure.getCellGroup(0);
+        grid = solution.clone();
+        grid[group[0]] = solution[group[1]];
+        grid[group[1]] = solution[group[0]];
+        assertFalse(verifier.isSolution(grid));
+        grid = solution.clone();
+        grid[group[0]] = solution[group[1]];
+        assertFalse(verifier.isSolution(grid));
+        assertTrue(verifier.isSolution(solution));
+    }
+
+    private static int[] solve(SudokuTypeStructure structure) {
+        SudokuSolver solver = new SudokuSolver(structure);
+        int[] empty = new int[structure.getTotalCells()];
+        Arrays.fill(empty, -1);
+        assertTrue(solver.setPuzzle(empty));
+        assertTrue(solver.solvePuzzle());
+        return solver.getSolution();
+    }
+
+    private static byte[] toBytes(int[] grid) {
+        byte[] bytes = new byte[grid.length];
+        for (int i = 0; i < grid.length; ++i)
+            bytes[i] = (byte) grid[i];
+        return bytes;
+    }
+}
@@ -0,0 +1,37 @@
+package net.lemonfactory.sudokusolver;
+
+/**
+ * Puzzles of {@link SudokuTypes#BOX_9} shared by the tests, with symbols
+ * '1' to '9' and '.' as a blank.
+ *
+ * @author Choongmin Lee
+ */
+final class TestPuzzles {
+
+    static final String EASY =
+            "..3.2.6..9..3.5..1..18.64....81.29..7.......8..67.82....26.95..8..2.3..9..5.1.3..";
+    static final String EASY_SOLUTION =
+            "483921657967345821251876493548132976729564138136798245372689514814253769695417382";
+    static final String HARD =
+            "8..........36......7..9.2...5...7.......457.....1...3...1....68..85...1..9....4..";
+    static final String HARD_SOLUTION =
+            "812753649943682175675491283154237896369845721287169534521974368438526917796318452";
+    static final String CLASSIC =
+            "53..7....6..195....98....6.8...6...34..8.3..17...2...6"
+             + ".6....28....419..5....8..79";
+
+    /**
+     * Utility class.
+     */
+    private TestPuzzles() {}
+
+    /**
+     * Returns the symbol indexes of the specified puzzle, -1 for a blank.
+     */
+    static int[] toIndexes(String puzzle) {
+        int[] indexes = new int[puzzle.length()];
+        for (int i = 0; i < indexes.length; ++i)
+            indexes[i] = puzzle.charAt(i) == '.' ? -1 : puzzle.charAt(i) - '1';
+        return indexes;
+    }
+}
@@ -0,0 +1,26 @@
+package net.lemonfactory.sudokusolver.internal;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testFalsePositiveRate() {
+        BloomFilter f = new BloomFilter(1000, 0.01);
+        int present = 0;
+        for (long i = 0; i < 1000; ++i)
+            if (f.add(i))
+                ++present;
+        assertTrue(present < 30);
+        for (long i = 0; i < 1000; ++i)
+            assertTrue(f.mightContain(i));
+        int falsePositives = 0;
+        for (long i = 1000; i < 11000; ++i)
+            if (f.mightContain(i))
+                ++falsePositives;
+        assertTrue(falsePositives < 300);
+        f.clear();
+        assertFalse(f.mightContain(7));
+    }
+}
@@ -0,0 +1,104 @@
+package net.lemonfactory.sudokusolver.internal;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class LongArraySimpleSetTest {
+
+    @Test
+    public void overall() {
+        SimpleSet s = new LongArraySimpleSet(9);
+        assertEquals(0, s.cardinality());
+        assertEquals(9, s.capacity());
+        s.add(0);
+        s.add(8);
+        assertTrue(s.contains(0));
+        assertFalse(s.contains(1));
+        assertTrue(s.contains(8));
+        assertEquals(2, s.cardinality());
+        s.clear();
+        assertEquals(0, s.cardinality());
+        assertEquals(-1, s.next());
+        s.add(1);
+        s.add(6);
+        s.add(7);
+        assertEquals(1, s.next());
+        assertEquals(6, s.next());
+        assertEquals(7, s.next());
+        assertEquals(1, s.next());
+        s.withdrawCursor();
+        assertEquals(1, s.next());
+        SimpleSet s2 = new LongArraySimpleSet(9);
+        s2.add(0);
+        s2.add(1);
+        s2.add(5);
+        s.addAll(s2);
+        assertEquals(5, s.cardinality());
+        s.complement();
+        assertEquals(4, s.cardinality());
+        assertFalse(s.contains(0));
+        assertTrue(s.contains(8));
+    }
+
+    @Test
+    public void multipleWords() {
+        SimpleSet s = new LongArraySimpleSet(130);
+        s.add(3);
+        s.add(64);
+        s.add(129);
+        assertEquals(3, s.cardinality());
+        assertEquals(3, s.next());
+        assertEquals(64, s.next());
+        assertEquals(129, s.next());
+        assertEquals(3, s.next());
+        s.complement();
+        assertEquals(127, s.cardinality());
+        assertFalse(s.contains(129));
+        assertTrue(s.contains(128));
+        SimpleSet b = new BooleanArraySimpleSet(130);
+        for (int i = 0; i < 130; ++i)
+            if (s.contains(i))
+                b.add(i);
+        assertEquals(s, b);
+        assertEquals(b, s);
+        s.remove(128);
+        assertFalse(s.equals(b));
+        SimpleSet t = new LongArraySimpleSet(130);
+        t.addAll(b);
+        assertEquals(127, t.cardinality());
+        t.addAll(s);
+        assertEquals(127, t.cardinality());
+    }
+
+    @Test
+    public void getWords() {
+        LongArraySimpleSet s = new LongArraySimpleSet(130);
+        s.add(3);
+        s.add(64);
+        s.add(129);
+        long[] words = new long[4];
+        s.getWords(words, 1);
+        assertEquals(0L, words[0]);
+        assertEquals(1L << 3, words[1]);
+        assertEquals(1L, words[2]);
+        assertEquals(2L, words[3]);
+    }
+
+    @Test
+    public void outOfRange() {
+        SimpleSet s = new LongArraySimpleSet(9);
+        try {
+            s.add(9);
+            fail();
+        } catch (ArrayIndexOutOfBoundsException e) {
+        }
+        try {
+            s.contains(63);
+            fail();
+        } catch (ArrayIndexOutOfBoundsException e) {
+        }
+        assertEquals(0, s.cardinality());
+        s.complement();
+        assertEquals(9, s.cardinality());
+    }
+}
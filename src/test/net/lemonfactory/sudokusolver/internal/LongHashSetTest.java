@@ -0,0 +1,44 @@
+package net.lemonfactory.sudokusolver.internal;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class LongHashSetTest {
+
+    @Test
+    public void testOverall() {
+        LongHashSet s = new LongHashSet(100);
+        assertEquals(100, s.capacity());
+        assertTrue(s.add(0));
+        assertFalse(s.add(0));
+        for (long i = 1; i < 100; ++i)
+            assertTrue(s.add(i * 0x12345678901L));
+        assertTrue(s.isFull());
+        assertTrue(s.contains(0));
+        assertTrue(s.contains(99 * 0x12345678901L));
+        assertFalse(s.contains(100 * 0x12345678901L));
+        assertFalse(s.add(5 * 0x12345678901L));
+        try {
+            s.add(-1);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(100, s.size());
+        }
+        s.clear();
+        assertEquals(0, s.size());
+        assertFalse(s.contains(0));
+    }
+
+    @Test
+    public void testCapacity() {
+        assertEquals(3, new LongHashSet(3).capacity());
+        for (int capacity : new int[] {0, LongHashSet.MAX_CAPACITY + 1,
+                                       Integer.MAX_VALUE}) {
+            try {
+                new LongHashSet(capacity);
+                fail();
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+}
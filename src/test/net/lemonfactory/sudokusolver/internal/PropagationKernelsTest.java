@@ -0,0 +1,52 @@
+package net.lemonfactory.sudokusolver.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import net.lemonfactory.sudokusolver.type.*;
+import org.junit.Test;
+
+public class PropagationKernelsTest {
+
+    @Test
+    public void testCompiledMatchesGeneric() {
+        SudokuTypeStructure structure = XTypeStructure.getInstance(
+                BoxTypeStructure.getInstance(3, 3));
+        int[] neighborStart = structure.getNeighborCellOffsets();
+        int[] neighbors = structure.getNeighborCellTable();
+        PropagationKernel generic =
+                PropagationKernels.generic(neighborStart, neighbors);
+        PropagationKernel compiled =
+                PropagationKernels.compile(neighborStart, neighbors);
+        assertNotNull(compiled);
+        assertNotSame(generic.getClass(), compiled.getClass());
+
+        Random random = new Random(7);
+        for (int round = 0; round < 500; ++round) {
+            long[] c1 = new long[81];
+            int[] grid = new int[81];
+            for (int i = 0; i < 81; ++i) {
+                c1[i] = random.nextInt(1 << 9);
+                grid[i] = random.nextInt(8) == 0 ? random.nextInt(9) : -1;
+            }
+            long[] c2 = c1.clone();
+            int[] s1 = new int[neighbors.length];
+            int[] s2 = new int[neighbors.length];
+            int cell = random.nextInt(81);
+            long bit = 1L << random.nextInt(9);
+            int n1 = generic.eliminate(cell, bit, c1, grid, s1);
+            int n2 = compiled.eliminate(cell, bit, c2, grid, s2);
+            assertEquals(n1, n2);
+            assertArrayEquals(c1, c2);
+            if (n1 > 0)
+                assertArrayEquals(Arrays.copyOf(s1, n1), Arrays.copyOf(s2, n2));
+        }
+    }
+
+    @Test
+    public void testTooLarge() {
+        int n = PropagationKernels.MAX_COMPILED_CELLS + 1;
+        assertNull(PropagationKernels.compile(new int[n + 1], new int[0]));
+    }
+}
@@ -0,0 +1,85 @@
+package net.lemonfactory.sudokusolver.type;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import net.lemonfactory.sudokusolver.SudokuTypes;
+import org.junit.Test;
+
+public class GeneralSudokuTypeStructureTest {
+
+    @Test
+    public void testTables() {
+        for (SudokuType type : SudokuTypes.PRESET_TYPES) {
+            SudokuTypeStructure s = type.getStructure();
+            for (int i = 0; i < s.getTotalCells(); ++i) {
+                assertRow(s.getNeighborCells(i), s.getNeighborCellOffsets(),
+                        s.getNeighborCellTable(), i);
+                assertRow(s.getCellGroupIndexes(i), s.getCellGroupIndexOffsets(),
+                        s.getCellGroupIndexTable(), i);
+            }
+            for (int g = 0; g < s.getNumCellGroups(); ++g)
+                assertRow(s.getCellGroup(g), s.getCellGroupOffsets(),
+                        s.getCellGroupTable(), g);
+        }
+    }
+
+    @Test
+    public void testIntersections() {
+        for (SudokuType type : SudokuTypes.PRESET_TYPES) {
+            SudokuTypeStructure s = type.getStructure();
+            int[] pairs = s.getIntersectingCellGroupPairs();
+            int p = 0;
+            for (int g1 = 0; g1 < s.getNumCellGroups(); ++g1) {
+                assertEquals(s.size(), s.getNumIntersections(g1, g1));
+                assertEquals(0, s.getCellGroupDiff(g1, g1).length);
+                for (int g2 = 0; g2 < s.getNumCellGroups(); ++g2) {
+                    int[] a = s.getCellGroup(g1);
+                    int[] b = s.getCellGroup(g2);
+                    int n = 0;
+                    for (int cell : a)
+                        if (Arrays.binarySearch(b, cell) >= 0)
+                            ++n;
+                    assertEquals(n, s.getNumIntersections(g1, g2));
+                    assertEquals(a.length - n, s.getCellGroupDiff(g1, g2).length);
+                    if (g1 < g2 && n > 0) {
+                        assertEquals(g1, pairs[p++]);
+                        assertEquals(g2, pairs[p++]);
+                    }
+                }
+            }
+            assertEquals(pairs.length, p);
+        }
+    }
+
+    @Test
+    public void testBuilder() {
+        GeneralSudokuTypeStructure s = GeneralSudokuTypeStructure.getBuilder(2)
+                .addCellGroup(1, 0, 1)
+                .addCellGroup(2, 3)
+                .addCellGroup(0, 2)
+                .addCellGroup(3, 1)
+                .build();
+        assertEquals(4, s.getTotalCells());
+        assertArrayEquals(new int[] {0, 1}, s.getCellGroup(0));
+        assertArrayEquals(new int[] {1, 3}, s.getCellGroup(3));
+        assertArrayEquals(new int[] {0, 3}, s.getCellGroupIndexes(1));
+        assertArrayEquals(new int[] {0, 3}, s.getNeighborCells(1));
+        assertEquals(s, GeneralSudokuTypeStructure.getBuilder(s).build());
+        try {
+            GeneralSudokuTypeStructure.getBuilder(2).addCellGroup(0, 1, 2);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            GeneralSudokuTypeStructure.getBuilder(2).addCellGroup(0, 2).build();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    private static void assertRow(int[] row, int[] offsets, int[] table, int i) {
+        assertArrayEquals(row,
+                Arrays.copyOfRange(table, offsets[i], offsets[i + 1]));
+    }
+}
@@ -0,0 +1,37 @@
+package net.lemonfactory.sudokusolver.type;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class JigsawTypeStructureTest {
+
+    private static final String LAYOUT =
+            "111233333111222333144442223114555522444456666775555688977766668"
+             + "999777888999997888";
+
+    @Test
+    public void testCache() {
+        JigsawTypeStructure s1 = JigsawTypeStructure.fromEncodedString(9, LAYOUT, '.');
+        JigsawTypeStructure s2 = JigsawTypeStructure.fromEncodedString(
+                9, LAYOUT.replace('1', 'a').replace('9', 'z'), '.');
+        assertSame(s1, s2);
+        JigsawTypeStructure s3 = JigsawTypeStructure.fromEncodedString(
+                RowColumnTypeStructure.getInstance(9), LAYOUT, '.');
+        assertEquals(s1, s3);
+        assertSame(s3, JigsawTypeStructure.fromEncodedString(
+                RowColumnTypeStructure.getInstance(9), LAYOUT, '.'));
+    }
+
+    @Test
+    public void testInvalidLayout() {
+        String invalid = "2" + LAYOUT.substring(1);
+        for (int i = 0; i < 2; ++i) {
+            try {
+                JigsawTypeStructure.fromEncodedString(9, invalid, '.');
+                fail();
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package net.lemonfactory.sudokusolver.type;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SamuraiTypeStructureTest {
+
+    @Test
+    public void testStructure() {
+        SamuraiTypeStructure s = SamuraiTypeStructure.getInstance(3, 3);
+        assertEquals(9, s.size());
+        assertEquals(21, s.getNumRows());
+        assertEquals(21, s.getNumColumns());
+        assertEquals(369, s.getTotalCells());
+        assertEquals(5 * 27 - 4, s.getNumCellGroups());
+        int shared = 0;
+        for (int i = 0; i < s.getTotalCells(); ++i) {
+            int n = s.getCellGroupIndexes(i).length;
+            assertTrue(n == 3 || n == 5);
+            if (n == 5)
+                ++shared;
+        }
+        assertEquals(36, shared);
+        assertEquals(0, s.getRow(0));
+        assertEquals(12, s.getColumn(9));
+        assertEquals(20, s.getRow(368));
+        assertEquals(20, s.getColumn(368));
+        assertEquals(s, SamuraiTypeStructure.getInstance(3, 3));
+    }
+}
@@ -0,0 +1,83 @@
+package net.lemonfactory.sudokusolver.type;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import net.lemonfactory.sudokusolver.SudokuTypes;
+import org.junit.Test;
+
+public class SudokuTypeStructuresTest {
+
+    @Test
+    public void testIntern() {
+        SudokuTypeStructure s1 = BoxTypeStructure.getInstance(2, 3);
+        SudokuTypeStructure s2 = BoxTypeStructure.getInstance(2, 3);
+        assertNotSame(s1, s2);
+        assertEquals(s1.hashCode(), s2.hashCode());
+        assertSame(s1, SudokuTypeStructures.intern(s1));
+        assertSame(s1, SudokuTypeStructures.intern(s2));
+        assertNotSame(s1, SudokuTypeStructures.intern(BoxTypeStructure.getInstance(3, 2)));
+    }
+
+    @Test
+    public void testId() {
+        SudokuTypeStructure s1 = XTypeStructure.getInstance(
+                BoxTypeStructure.getInstance(2, 2));
+        SudokuTypeStructure s2 = XTypeStructure.getInstance(
+                BoxTypeStructure.getInstance(2, 2));
+        long id = SudokuTypeStructures.getId(s1);
+        assertEquals(id, SudokuTypeStructures.getId(s2));
+        assertTrue(id != SudokuTypeStructures.getId(BoxTypeStructure.getInstance(2, 2)));
+        assertSame(s1, SudokuTypeStructures.intern(s1));
+        assertSame(s1, SudokuTypeStructures.forId(id));
+        assertNull(SudokuTypeStructures.forId(id + 1));
+    }
+
+    @Test
+    public void testIdWithoutTables() {
+        SudokuTypeStructure box = BoxTypeStructure.getInstance(2, 2);
+        box.getNeighborCellTable();
+        GeneralSudokuTypeStructure s =
+                GeneralSudokuTypeStructure.getBuilder(box).build();
+        assertFalse(s.hasTables());
+        assertEquals(SudokuTypeStructures.getId(box),
+                SudokuTypeStructures.getId(s));
+        SudokuTypeStructures.intern(s);
+        assertFalse(s.hasTables());
+    }
+
+    @Test
+    public void testSnapshot() throws IOException {
+        for (SudokuType type : SudokuTypes.PRESET_TYPES) {
+            SudokuTypeStructure s = type.getStructure();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SudokuTypeStructures.writeSnapshot(s, out);
+            SudokuTypeStructure read = SudokuTypeStructures.readSnapshot(
+                    ByteBuffer.wrap(out.toByteArray()));
+            assertEquals(SudokuTypeStructures.getId(s),
+                    SudokuTypeStructures.getId(read));
+            assertEquals(s.boxWidth(), read.boxWidth());
+            assertArrayEquals(s.getNeighborCellTable(), read.getNeighborCellTable());
+            assertArrayEquals(s.getIntersectingCellGroupPairs(),
+                    read.getIntersectingCellGroupPairs());
+            for (int g1 = 0; g1 < s.getNumCellGroups(); ++g1) {
+                assertEquals(s.getCellGroupColor(g1), read.getCellGroupColor(g1));
+                for (int g2 = 0; g2 < s.getNumCellGroups(); ++g2) {
+                    assertEquals(s.getNumIntersections(g1, g2),
+                            read.getNumIntersections(g1, g2));
+                    assertArrayEquals(s.getCellGroupDiff(g1, g2),
+                            read.getCellGroupDiff(g1, g2));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedSnapshot() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SudokuTypeStructures.writeSnapshot(SudokuTypes.BOX_9.getStructure(), out);
+        SudokuTypeStructures.readSnapshot(
+                ByteBuffer.wrap(out.toByteArray(), 0, out.size() - 4));
+    }
+}